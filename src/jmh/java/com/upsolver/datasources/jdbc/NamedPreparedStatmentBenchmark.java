@@ -0,0 +1,55 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.utils.NamedPreparedStatment;
+import com.upsolver.datasources.jdbc.utils.NamedQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Parsing of named parameters and binding their values.
+ */
+@State(Scope.Thread)
+public class NamedPreparedStatmentBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int parameters;
+
+    private String sql;
+    private NamedQuery template;
+    private Connection connection;
+
+    @Setup
+    public void setup() {
+        var sb = new StringBuilder("SELECT * FROM BENCH.SYNTHETIC WHERE 1 = 1");
+        for (int i = 0; i < parameters; i++) {
+            sb.append(" AND COL_").append(i).append(" >= :param").append(i % 3);
+        }
+        sql = sb.toString();
+        template = NamedQuery.parse(sql);
+        connection = StubConnections.connection();
+    }
+
+    @Benchmark
+    public NamedPreparedStatment parseAndBind() throws SQLException {
+        var statement = new NamedPreparedStatment(connection, sql);
+        statement.setLong("param0", 1);
+        statement.setLong("param1", 2);
+        statement.setLong("param2", 3);
+        return statement;
+    }
+
+    @Benchmark
+    public NamedPreparedStatment bindTemplate() throws SQLException {
+        var statement = new NamedPreparedStatment(connection, template);
+        statement.setLong("param0", 1);
+        statement.setLong("param1", 2);
+        statement.setLong("param2", 3);
+        return statement;
+    }
+}
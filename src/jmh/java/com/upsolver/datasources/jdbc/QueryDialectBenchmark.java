@@ -0,0 +1,61 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Cost of generating and preparing the task info and data queries of every dialect.
+ * Task info queries are also executed, against a connection without rows.
+ */
+@State(Scope.Thread)
+public class QueryDialectBenchmark {
+
+    @Param({"jdbc:mysql", "jdbc:postgresql", "jdbc:redshift", "jdbc:oracle", "jdbc:sqlserver", "jdbc:snowflake"})
+    public String connectionPrefix;
+
+    @Param({"taskInfoByInc", "taskInfoByIncAndTime", "queryByInc", "queryByIncAndTime", "queryFullTable"})
+    public String query;
+
+    private QueryDialect queryDialect;
+    private TableInfo tableInfo;
+    private JDBCTaskMetadata metadata;
+    private Connection connection;
+    private final Instant maxTime = Instant.parse("2020-10-01T00:00:00Z");
+
+    @Setup
+    public void setup() {
+        queryDialect = QueryDialectProvider.forConnection(connectionPrefix + "://localhost/bench", false);
+        tableInfo = new SyntheticTable(16, "mixed").tableInfo;
+        tableInfo.setTimeColumns(new String[]{SyntheticTable.timeColumn, "COL_3"});
+        metadata = new JDBCTaskMetadata(1000, 2000, Instant.parse("2020-09-30T00:00:00Z"), maxTime);
+        connection = StubConnections.connection();
+    }
+
+    @Benchmark
+    public Object buildQuery() throws SQLException {
+        switch (query) {
+            case "taskInfoByInc":
+                return queryDialect.taskInfoByInc(tableInfo, metadata, connection, null);
+            case "taskInfoByIncAndTime":
+                return queryDialect.taskInfoByIncAndTime(tableInfo, metadata, maxTime, connection, null);
+            case "queryByInc":
+                return queryDialect.queryByInc(tableInfo, metadata, -1, connection, null);
+            case "queryByIncAndTime":
+                return queryDialect.queryByIncAndTime(tableInfo, metadata, -1, false, connection, null);
+            case "queryFullTable":
+                return queryDialect.queryFullTable(tableInfo, metadata, 100, connection, null);
+            default:
+                throw new IllegalArgumentException("Unknown query: " + query);
+        }
+    }
+}
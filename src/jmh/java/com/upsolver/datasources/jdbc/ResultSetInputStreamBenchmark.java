@@ -0,0 +1,81 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.Compression;
+import com.upsolver.datasources.jdbc.utils.DaemonThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * End to end read path: fetching, watermark checks, encoding, compressing and draining the stream, in rows per second.
+ * With collectMetrics the stages are timed as well, showing the overhead of collecting metrics.
+ */
+@State(Scope.Thread)
+public class ResultSetInputStreamBenchmark {
+    private static final int rows = 4096;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    @Param({"numeric", "text", "mixed"})
+    public String typeMix;
+
+    @Param({"csv", "json"})
+    public String format;
+
+    @Param({"NONE", "GZIP"})
+    public Compression compression;
+
+    @Param({"0", "262144"})
+    public int prefetchBytes;
+
+    @Param({"false", "true"})
+    public boolean collectMetrics;
+
+    private SyntheticTable table;
+    private QueryDialect queryDialect;
+    private JDBCTaskMetadata metadata;
+    private ExecutorService prefetchExecutor;
+    private ReadMetrics metrics;
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    @Setup
+    public void setup() {
+        table = new SyntheticTable(width, typeMix);
+        queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/bench", format.equals("json"));
+        metadata = new JDBCTaskMetadata(0, rows, Instant.EPOCH, JDBCTaskMetadata.initalEndTime);
+        prefetchExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("bench-prefetch"));
+        metrics = collectMetrics ? new ReadMetrics("BENCH.SYNTHETIC", null) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public long read() throws Exception {
+        var valuesGetter = new ResultSetValuesGetter(table.tableInfo, SyntheticResultSet.create(table, rows), queryDialect, 1, null, 0, null, metrics);
+        var rowReader = new RowReader(table.tableInfo, valuesGetter, metadata, StubConnections.connection(), false);
+        var converter = format.equals("csv") ? new CsvRowConverter(table.tableInfo) : new JsonRowConverter(table.tableInfo);
+        long total = 0;
+        try (var inputStream = compression.wrap(new ResultSetInputStream(converter, rowReader, true, prefetchExecutor, prefetchBytes, null, metrics), 6, 64 * 1024)) {
+            int read;
+            while ((read = inputStream.read(readBuffer, 0, readBuffer.length)) >= 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
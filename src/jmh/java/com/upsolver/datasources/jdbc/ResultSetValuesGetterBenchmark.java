@@ -0,0 +1,69 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Value extraction from a result set in rows per second.
+ */
+@State(Scope.Thread)
+public class ResultSetValuesGetterBenchmark {
+    private static final int rows = 1024;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    @Param({"numeric", "text", "mixed"})
+    public String typeMix;
+
+    @Param({"false", "true"})
+    public boolean keepTypes;
+
+    @Param({"1", "256"})
+    public int batchSize;
+
+    private SyntheticTable table;
+    private QueryDialect queryDialect;
+
+    @Setup
+    public void setup() {
+        table = new SyntheticTable(width, typeMix);
+        queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/bench", keepTypes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public void getValues(Blackhole blackhole) throws Exception {
+        try (var valuesGetter = new ResultSetValuesGetter(table.tableInfo, SyntheticResultSet.create(table, rows), queryDialect, batchSize)) {
+            while (valuesGetter.next()) {
+                blackhole.consume(valuesGetter.getValues());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public void writeValues(Blackhole blackhole) throws Exception {
+        var converter = keepTypes ? new JsonRowConverter(table.tableInfo) : new CsvRowConverter(table.tableInfo);
+        var buffer = new ByteArrayBuffer(64 * 1024);
+        try (var valuesGetter = new ResultSetValuesGetter(table.tableInfo, SyntheticResultSet.create(table, rows), queryDialect, batchSize)) {
+            while (valuesGetter.next()) {
+                converter.startRow(buffer);
+                valuesGetter.writeValues(converter);
+                converter.endRow();
+                if (buffer.size() > 32 * 1024) {
+                    buffer.reset();
+                }
+            }
+        }
+        blackhole.consume(buffer.size());
+    }
+}
@@ -0,0 +1,68 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Encoding throughput of the CSV, JSON and Avro converters in rows per second.
+ */
+@State(Scope.Thread)
+public class RowConverterBenchmark {
+    private static final int rows = 1024;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    @Param({"numeric", "text", "mixed"})
+    public String typeMix;
+
+    @Param({"csv", "json", "avro"})
+    public String format;
+
+    private Object[][] values;
+    private RowConverter converter;
+    private ByteArrayBuffer buffer;
+
+    @Setup
+    public void setup() throws SQLException {
+        var table = new SyntheticTable(width, typeMix);
+        values = new Object[rows][width];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < width; column++) {
+                values[row][column] = table.value(column, row);
+            }
+        }
+        switch (format) {
+            case "csv":
+                converter = new CsvRowConverter(table.tableInfo);
+                break;
+            case "json":
+                converter = new JsonRowConverter(table.tableInfo);
+                break;
+            default:
+                var queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/bench", true);
+                converter = new AvroRowConverter(new AvroSchema(table.tableInfo, queryDialect));
+        }
+        buffer = new ByteArrayBuffer(64 * 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public int convertRows() throws IOException {
+        buffer.reset();
+        for (Object[] row : values) {
+            converter.convertRow(row, buffer);
+        }
+        converter.endBatch(buffer);
+        return buffer.size();
+    }
+}
@@ -0,0 +1,58 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+
+/**
+ * Watermark tracking in RowReader.next over rows read by the incrementing and time columns, in rows per second.
+ * With skipHalf the first half of the rows precede the window and are skipped by the reader.
+ */
+@State(Scope.Thread)
+public class RowReaderBenchmark {
+    private static final int rows = 4096;
+
+    @Param({"16"})
+    public int width;
+
+    @Param({"all", "skipHalf"})
+    public String window;
+
+    @Param({"1", "256"})
+    public int batchSize;
+
+    private SyntheticTable table;
+    private QueryDialect queryDialect;
+    private JDBCTaskMetadata metadata;
+
+    @Setup
+    public void setup() {
+        table = new SyntheticTable(width, "mixed");
+        table.tableInfo.setTimeColumns(new String[]{SyntheticTable.timeColumn});
+        queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/bench", false);
+        var startRow = window.equals("all") ? 0 : rows / 2;
+        metadata = new JDBCTaskMetadata(0, rows,
+                Instant.ofEpochMilli(SyntheticTable.timeMillis(startRow)),
+                Instant.ofEpochMilli(SyntheticTable.timeMillis(rows)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public long next() throws Exception {
+        var valuesGetter = new ResultSetValuesGetter(table.tableInfo, SyntheticResultSet.create(table, rows), queryDialect, batchSize);
+        try (var rowReader = new RowReader(table.tableInfo, valuesGetter, metadata, StubConnections.connection(), false)) {
+            long count = 0;
+            while (rowReader.next()) {
+                count++;
+            }
+            return count + rowReader.getLastIncValue();
+        }
+    }
+}
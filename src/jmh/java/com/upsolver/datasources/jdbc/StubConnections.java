@@ -0,0 +1,59 @@
+package com.upsolver.datasources.jdbc;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Connections that accept statements without a database, used to benchmark SQL generation.
+ * Queries return no rows.
+ */
+class StubConnections {
+
+    static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(StubConnections.class.getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return preparedStatement((String) args[0]);
+                        case "getAutoCommit":
+                        case "isClosed":
+                            return false;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static PreparedStatement preparedStatement(String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(StubConnections.class.getClassLoader(), new Class[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "toString":
+                            return sql;
+                        case "executeQuery":
+                            return emptyResultSet();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static ResultSet emptyResultSet() {
+        return (ResultSet) Proxy.newProxyInstance(StubConnections.class.getClassLoader(), new Class[]{ResultSet.class},
+                (proxy, method, args) -> defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else {
+            return null;
+        }
+    }
+}
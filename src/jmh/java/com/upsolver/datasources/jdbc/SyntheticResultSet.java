@@ -0,0 +1,228 @@
+package com.upsolver.datasources.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Forward only result set over a {@link SyntheticTable}, supports the accessors used by the read path and throws on
+ * anything else.
+ */
+class SyntheticResultSet implements InvocationHandler {
+    private final SyntheticTable table;
+    private final long rowCount;
+    private final ResultSetMetaData metaData;
+
+    private long row = -1;
+    private boolean wasNull;
+
+    private SyntheticResultSet(SyntheticTable table, long rowCount) {
+        this.table = table;
+        this.rowCount = rowCount;
+        this.metaData = new SyntheticResultSetMetaData(table);
+    }
+
+    static ResultSet create(SyntheticTable table, long rowCount) {
+        return (ResultSet) Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                new SyntheticResultSet(table, rowCount));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        switch (method.getName()) {
+            case "next":
+                row++;
+                return row < rowCount;
+            case "close":
+                return null;
+            case "wasNull":
+                return wasNull;
+            case "getMetaData":
+                return metaData;
+            case "findColumn":
+                return findColumn((String) args[0]);
+        }
+        if (method.getName().equals("getObject") && args.length == 2 && args[1] == LocalDateTime.class) {
+            var value = value((Integer) args[0]);
+            return value != null ? ((Timestamp) value).toLocalDateTime() : null;
+        }
+        if (args == null || args.length != 1) {
+            throw unsupported(method);
+        }
+        var value = value(args[0] instanceof String ? findColumn((String) args[0]) : (Integer) args[0]);
+        switch (method.getName()) {
+            case "getObject":
+                return value;
+            case "getString":
+                return value != null ? value.toString() : null;
+            case "getLong":
+                return value != null ? ((Number) value).longValue() : 0L;
+            case "getInt":
+                return value != null ? ((Number) value).intValue() : 0;
+            case "getDouble":
+                return value != null ? ((Number) value).doubleValue() : 0.0;
+            case "getBoolean":
+                return value != null && (Boolean) value;
+            case "getBigDecimal":
+                return value != null ? new BigDecimal(value.toString()) : null;
+            case "getTimestamp":
+                return value;
+            default:
+                throw unsupported(method);
+        }
+    }
+
+    private Object value(int columnIndex) {
+        var value = table.value(columnIndex - 1, row);
+        wasNull = value == null;
+        return value;
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+        var columns = table.tableInfo.getColumns();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].getName().equalsIgnoreCase(columnLabel)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("Unknown column: " + columnLabel);
+    }
+
+    private static UnsupportedOperationException unsupported(Method method) {
+        return new UnsupportedOperationException(method.getName() + " is not supported by benchmark result set");
+    }
+
+    private static class SyntheticResultSetMetaData implements ResultSetMetaData {
+        private final SyntheticTable table;
+
+        SyntheticResultSetMetaData(SyntheticTable table) {
+            this.table = table;
+        }
+
+        private JDBCType type(int column) {
+            return table.types[column - 1];
+        }
+
+        @Override
+        public int getColumnCount() {
+            return table.types.length;
+        }
+
+        @Override
+        public boolean isAutoIncrement(int column) {
+            return column == 1;
+        }
+
+        @Override
+        public boolean isCaseSensitive(int column) {
+            return false;
+        }
+
+        @Override
+        public boolean isSearchable(int column) {
+            return true;
+        }
+
+        @Override
+        public boolean isCurrency(int column) {
+            return false;
+        }
+
+        @Override
+        public int isNullable(int column) {
+            return column <= 2 ? columnNoNulls : columnNullable;
+        }
+
+        @Override
+        public boolean isSigned(int column) {
+            return true;
+        }
+
+        @Override
+        public int getColumnDisplaySize(int column) {
+            return 64;
+        }
+
+        @Override
+        public String getColumnLabel(int column) {
+            return getColumnName(column);
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return table.tableInfo.getColumns()[column - 1].getName();
+        }
+
+        @Override
+        public String getSchemaName(int column) {
+            return table.tableInfo.getSchema();
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return 0;
+        }
+
+        @Override
+        public int getScale(int column) {
+            return type(column) == JDBCType.DECIMAL ? 2 : 0;
+        }
+
+        @Override
+        public String getTableName(int column) {
+            return table.tableInfo.getName();
+        }
+
+        @Override
+        public String getCatalogName(int column) {
+            return "";
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return type(column).getVendorTypeNumber();
+        }
+
+        @Override
+        public String getColumnTypeName(int column) {
+            return type(column).getName();
+        }
+
+        @Override
+        public boolean isReadOnly(int column) {
+            return true;
+        }
+
+        @Override
+        public boolean isWritable(int column) {
+            return false;
+        }
+
+        @Override
+        public boolean isDefinitelyWritable(int column) {
+            return false;
+        }
+
+        @Override
+        public String getColumnClassName(int column) {
+            return Object.class.getName();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("Not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * Column layout and pre-generated values for benchmark tables.
+ * The first column is always an incrementing BIGINT and the second a TIMESTAMP so the table can be read by either.
+ */
+class SyntheticTable {
+    static final String incColumn = "ID";
+    static final String timeColumn = "UPDATED_AT";
+    static final long baseTimeMillis = 1_600_000_000_000L;
+
+    private static final int distinctValues = 1024;
+
+    final TableInfo tableInfo;
+    final JDBCType[] types;
+    // values[column][row % distinctValues], the incrementing and time columns are computed from the row number
+    final Object[][] values;
+
+    SyntheticTable(int width, String typeMix) {
+        types = new JDBCType[width];
+        types[0] = JDBCType.BIGINT;
+        types[1] = JDBCType.TIMESTAMP;
+        JDBCType[] mix = typeMix(typeMix);
+        for (int i = 2; i < width; i++) {
+            types[i] = mix[i % mix.length];
+        }
+
+        var columns = new ColumnInfo[width];
+        for (int i = 0; i < width; i++) {
+            var name = i == 0 ? incColumn : i == 1 ? timeColumn : "COL_" + i;
+            columns[i] = new ColumnInfo(name, types[i], i == 0, types[i] == JDBCType.TIMESTAMP);
+        }
+        tableInfo = new TableInfo(null, "BENCH", "SYNTHETIC", columns);
+        tableInfo.setIncColumn(incColumn);
+
+        var random = new Random(width * 31L + typeMix.hashCode());
+        values = new Object[width][distinctValues];
+        for (int i = 2; i < width; i++) {
+            for (int j = 0; j < distinctValues; j++) {
+                values[i][j] = randomValue(types[i], random);
+            }
+        }
+    }
+
+    Object value(int column, long row) {
+        switch (column) {
+            case 0:
+                return row;
+            case 1:
+                return new Timestamp(timeMillis(row));
+            default:
+                return values[column][(int) (row % distinctValues)];
+        }
+    }
+
+    static long timeMillis(long row) {
+        return baseTimeMillis + row * 10;
+    }
+
+    private static JDBCType[] typeMix(String typeMix) {
+        switch (typeMix) {
+            case "numeric":
+                return new JDBCType[]{JDBCType.BIGINT, JDBCType.INTEGER, JDBCType.DOUBLE, JDBCType.DECIMAL};
+            case "text":
+                return new JDBCType[]{JDBCType.VARCHAR};
+            case "mixed":
+                return new JDBCType[]{JDBCType.BIGINT, JDBCType.VARCHAR, JDBCType.DOUBLE, JDBCType.TIMESTAMP, JDBCType.BOOLEAN, JDBCType.VARCHAR};
+            default:
+                throw new IllegalArgumentException("Unknown type mix: " + typeMix);
+        }
+    }
+
+    private static Object randomValue(JDBCType type, Random random) {
+        if (random.nextInt(20) == 0) {
+            return null;
+        }
+        switch (type) {
+            case BIGINT:
+                return random.nextLong();
+            case INTEGER:
+                return random.nextInt();
+            case DOUBLE:
+                return random.nextDouble() * 1_000_000;
+            case DECIMAL:
+                return BigDecimal.valueOf(random.nextInt(100_000_000), 2);
+            case BOOLEAN:
+                return random.nextBoolean();
+            case TIMESTAMP:
+                return new Timestamp(baseTimeMillis + random.nextInt(1_000_000_000));
+            case VARCHAR:
+                return randomText(random);
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+    }
+
+    private static String randomText(Random random) {
+        var length = 4 + random.nextInt(40);
+        var sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Mostly plain text with the occasional character that needs quoting or multi byte encoding
+            int kind = random.nextInt(100);
+            if (kind == 0) {
+                sb.append(',');
+            } else if (kind == 1) {
+                sb.append('"');
+            } else if (kind == 2) {
+                sb.append('é');
+            } else {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,298 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Writes rows as an Avro object container file using the binary encoding.
+ * The header holds the schema, then every batch of rows written into a buffer becomes a single data block.
+ * Values that don't match the type of their field, for example decimals read into a long field, are converted.
+ */
+class AvroRowConverter implements RowConverter {
+    private static final byte[] magic = {'O', 'b', 'j', 1};
+    private static final int syncSize = 16;
+    // Union branches of the nullable fields
+    private static final int nullBranch = 0;
+    private static final int valueBranch = 2; // Zig-zag encoding of 1
+
+    private final AvroSchema schema;
+    private final byte[] fieldTypes;
+    private final byte[] sync;
+
+    private ByteArrayBuffer buffer;
+    private int column;
+    private int blockStart;
+    private long blockRows = 0;
+
+    AvroRowConverter(AvroSchema schema) {
+        this(schema, newSync());
+    }
+
+    /**
+     * Converters writing blocks of the same file must share its sync marker
+     */
+    AvroRowConverter(AvroSchema schema, byte[] sync) {
+        this.schema = schema;
+        this.fieldTypes = schema.getFieldTypes();
+        this.sync = sync;
+    }
+
+    static byte[] newSync() {
+        var sync = new byte[syncSize];
+        var uuid = UUID.randomUUID();
+        for (int i = 0; i < 8; i++) {
+            sync[i] = (byte) (uuid.getMostSignificantBits() >>> (i * 8));
+            sync[i + 8] = (byte) (uuid.getLeastSignificantBits() >>> (i * 8));
+        }
+        return sync;
+    }
+
+    @Override
+    public Boolean hasHeader() {
+        return true;
+    }
+
+    @Override
+    public void writeHeader(ByteArrayBuffer buffer) {
+        buffer.write(magic, 0, magic.length);
+        // File metadata is a map with a single block of two entries
+        writeVarLong(2, buffer);
+        writeBytes("avro.schema", buffer);
+        writeBytes(schema.toJson(), buffer);
+        writeBytes("avro.codec", buffer);
+        writeBytes("null", buffer);
+        writeVarLong(0, buffer);
+        buffer.write(sync, 0, syncSize);
+    }
+
+    @Override
+    public void startRow(ByteArrayBuffer buffer) {
+        if (blockRows == 0) {
+            blockStart = buffer.size();
+        }
+        this.buffer = buffer;
+        this.column = 0;
+    }
+
+    @Override
+    public void endRow() {
+        blockRows++;
+    }
+
+    /**
+     * Blocks start with their row count and size, which are only known once all their rows are written.
+     * The rows are moved forward to make room for them.
+     */
+    @Override
+    public void endBatch(ByteArrayBuffer buffer) {
+        if (blockRows == 0) {
+            return;
+        }
+        int blockEnd = buffer.size();
+        int dataSize = blockEnd - blockStart;
+        int headerSize = varLongSize(blockRows) + varLongSize(dataSize);
+        buffer.ensureCapacity(headerSize + syncSize);
+        byte[] array = buffer.array();
+        System.arraycopy(array, blockStart, array, blockStart + headerSize, dataSize);
+        buffer.setSize(blockStart);
+        writeVarLong(blockRows, buffer);
+        writeVarLong(dataSize, buffer);
+        buffer.setSize(blockEnd + headerSize);
+        buffer.write(sync, 0, syncSize);
+        blockRows = 0;
+    }
+
+    @Override
+    public void writeNull() {
+        column++;
+        buffer.write(nullBranch);
+    }
+
+    @Override
+    public void writeLong(long value) {
+        buffer.write(valueBranch);
+        switch (fieldTypes[column++]) {
+            case AvroSchema.longField:
+                writeVarLong(value, buffer);
+                break;
+            case AvroSchema.doubleField:
+                writeDouble(value, buffer);
+                break;
+            case AvroSchema.booleanField:
+                buffer.write(value != 0 ? 1 : 0);
+                break;
+            default:
+                writeBytes(Long.toString(value), buffer);
+        }
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        buffer.write(valueBranch);
+        switch (fieldTypes[column++]) {
+            case AvroSchema.longField:
+                writeVarLong((long) value, buffer);
+                break;
+            case AvroSchema.doubleField:
+                writeDouble(value, buffer);
+                break;
+            case AvroSchema.booleanField:
+                buffer.write(value != 0 ? 1 : 0);
+                break;
+            default:
+                writeBytes(Double.toString(value), buffer);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        buffer.write(valueBranch);
+        switch (fieldTypes[column++]) {
+            case AvroSchema.longField:
+                writeVarLong(value ? 1 : 0, buffer);
+                break;
+            case AvroSchema.doubleField:
+                writeDouble(value ? 1 : 0, buffer);
+                break;
+            case AvroSchema.booleanField:
+                buffer.write(value ? 1 : 0);
+                break;
+            default:
+                writeBytes(value ? "true" : "false", buffer);
+        }
+    }
+
+    @Override
+    public void writeString(String value) {
+        if (value == null) {
+            writeNull();
+        } else if (isBytesEncoded(fieldTypes[column])) {
+            column++;
+            buffer.write(valueBranch);
+            writeBytes(value, buffer);
+        } else {
+            writeParsed(value);
+        }
+    }
+
+    @Override
+    public void writeUtf8String(byte[] bytes, int offset, int length) {
+        if (isBytesEncoded(fieldTypes[column])) {
+            column++;
+            buffer.write(valueBranch);
+            writeVarLong(length, buffer);
+            buffer.write(bytes, offset, length);
+        } else {
+            writeParsed(new String(bytes, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void writeObject(Object value) {
+        if (value == null) {
+            writeNull();
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof byte[]) {
+            writeByteArray((byte[]) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number && !isBytesEncoded(fieldTypes[column])) {
+            if (fieldTypes[column] == AvroSchema.doubleField) {
+                writeDouble(((Number) value).doubleValue());
+            } else {
+                writeLong(((Number) value).longValue());
+            }
+        } else if (value instanceof Date) {
+            writeLong(((Date) value).getTime());
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeByteArray(byte[] value) {
+        if (fieldTypes[column] == AvroSchema.bytesField) {
+            column++;
+            buffer.write(valueBranch);
+            writeVarLong(value.length, buffer);
+            buffer.write(value, 0, value.length);
+        } else {
+            writeString(Base64.getEncoder().encodeToString(value));
+        }
+    }
+
+    private static boolean isBytesEncoded(byte fieldType) {
+        return fieldType == AvroSchema.stringField || fieldType == AvroSchema.bytesField;
+    }
+
+    private void writeParsed(String value) {
+        switch (fieldTypes[column]) {
+            case AvroSchema.longField:
+                writeLong(Long.parseLong(value.trim()));
+                break;
+            case AvroSchema.doubleField:
+                writeDouble(Double.parseDouble(value.trim()));
+                break;
+            default:
+                writeBoolean(value.equals("1") || Boolean.parseBoolean(value.trim()));
+        }
+    }
+
+    private static void writeBytes(String value, ByteArrayBuffer buffer) {
+        writeVarLong(utf8Length(value), buffer);
+        buffer.writeUtf8(value);
+    }
+
+    private static void writeDouble(double value, ByteArrayBuffer buffer) {
+        long bits = Double.doubleToLongBits(value);
+        buffer.ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer.write((int) (bits >>> (i * 8)));
+        }
+    }
+
+    private static void writeVarLong(long value, ByteArrayBuffer buffer) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer.write((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        buffer.write((int) zigZag);
+    }
+
+    private static int varLongSize(long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        int size = 1;
+        while ((zigZag & ~0x7FL) != 0) {
+            zigZag >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Matches the bytes written by ByteArrayBuffer.writeUtf8
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int result = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    result += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    result += 2;
+                }
+            } else if (c >= 0x80) {
+                result++;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+package com.upsolver.datasources.jdbc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.Types;
+import java.util.HashSet;
+
+/**
+ * An Avro record schema with a nullable field for every column of the table.
+ * Integer, floating point and boolean columns keep their type, date and timestamp columns are written as
+ * timestamp-millis, binary columns are written as bytes, and everything else (including decimals, whose scale isn't
+ * known up front) is written as a string.
+ */
+class AvroSchema {
+    static final byte longField = 0;
+    static final byte doubleField = 1;
+    static final byte booleanField = 2;
+    static final byte stringField = 3;
+    // Encoded like strings, so values read as text are written as their UTF-8 bytes
+    static final byte bytesField = 4;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final byte[] fieldTypes;
+    private final String json;
+
+    AvroSchema(TableInfo tableInfo, QueryDialect queryDialect) throws SQLException {
+        ColumnInfo[] columns = tableInfo.getColumns();
+        fieldTypes = new byte[columns.length];
+        var usedNames = new HashSet<String>();
+        var schema = mapper.createObjectNode();
+        schema.put("type", "record");
+        schema.put("name", avroName(tableInfo.getName()));
+        var fields = schema.putArray("fields");
+        for (int i = 0; i < columns.length; i++) {
+            int sqlType = typeCode(queryDialect.getJdbcType(columns[i].getType()));
+            fieldTypes[i] = fieldType(sqlType);
+            var field = fields.addObject();
+            field.put("name", uniqueName(avroName(columns[i].getName()), usedNames));
+            var union = field.putArray("type");
+            union.add("null");
+            union.add(typeNode(fieldTypes[i], sqlType));
+            field.putNull("default");
+        }
+        json = schema.toString();
+    }
+
+    byte[] getFieldTypes() {
+        return fieldTypes;
+    }
+
+    String toJson() {
+        return json;
+    }
+
+    private static int typeCode(SQLType type) {
+        var code = type == null ? null : type.getVendorTypeNumber();
+        return code == null ? Types.OTHER : code;
+    }
+
+    private static byte fieldType(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return longField;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return doubleField;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return booleanField;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return bytesField;
+            default:
+                return stringField;
+        }
+    }
+
+    private static JsonNode typeNode(byte fieldType, int sqlType) {
+        switch (fieldType) {
+            case longField:
+                if (sqlType == Types.DATE || sqlType == Types.TIMESTAMP || sqlType == Types.TIMESTAMP_WITH_TIMEZONE) {
+                    ObjectNode node = mapper.createObjectNode();
+                    node.put("type", "long");
+                    node.put("logicalType", "timestamp-millis");
+                    return node;
+                }
+                return TextNode.valueOf("long");
+            case doubleField:
+                return TextNode.valueOf("double");
+            case booleanField:
+                return TextNode.valueOf("boolean");
+            case bytesField:
+                return TextNode.valueOf("bytes");
+            default:
+                return TextNode.valueOf("string");
+        }
+    }
+
+    /**
+     * Avro names must match [A-Za-z_][A-Za-z0-9_]*, other characters are replaced with underscores
+     */
+    private static String avroName(String name) {
+        var result = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (i > 0 && c >= '0' && c <= '9');
+            if (i == 0 && c >= '0' && c <= '9') {
+                result.append('_');
+                valid = true;
+            }
+            result.append(valid ? c : '_');
+        }
+        return result.length() == 0 ? "_" : result.toString();
+    }
+
+    private static String uniqueName(String name, HashSet<String> usedNames) {
+        var result = name;
+        for (int suffix = 1; !usedNames.add(result); suffix++) {
+            result = name + "_" + suffix;
+        }
+        return result;
+    }
+}
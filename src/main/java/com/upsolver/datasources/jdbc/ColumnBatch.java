@@ -0,0 +1,305 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import com.upsolver.datasources.jdbc.utils.ValueSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds up to a fixed number of rows in column vectors so they can be fetched, checked and encoded in batches.
+ * Numeric and boolean values are kept in primitive arrays, strings as UTF-8 bytes with per row offsets and nulls in
+ * a bitmap per column. The watermark values of every row are kept next to the columns as longs.
+ * <p>
+ * Rows are added by calling {@link #startRow()}, one of the ValueSink methods for every column in order, then
+ * {@link #endRow(long, long)}. A column takes the type of the first value written to it and falls back to holding
+ * objects if a value of a different type shows up.
+ */
+class ColumnBatch implements ValueSink {
+    // Stored instead of the timestamp of rows with no value in any of the time columns
+    static final long missingTimestamp = Long.MIN_VALUE;
+
+    private static final byte unset = 0;
+    private static final byte longKind = 1;
+    private static final byte doubleKind = 2;
+    private static final byte booleanKind = 3;
+    private static final byte stringKind = 4;
+    private static final byte objectKind = 5;
+
+    private final int capacity;
+    private final Column[] columns;
+    private final long[] incValues;
+    private final long[] timestampNanos;
+
+    private int size = 0;
+    private int column = 0;
+
+    ColumnBatch(int columnCount, int capacity) {
+        this.capacity = capacity;
+        columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = new Column(capacity);
+        }
+        incValues = new long[capacity];
+        timestampNanos = new long[capacity];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (Column c : columns) {
+            c.clear(size);
+        }
+        size = 0;
+    }
+
+    void startRow() {
+        column = 0;
+    }
+
+    void endRow(long incValue, long timestampNanos) {
+        incValues[size] = incValue;
+        this.timestampNanos[size] = timestampNanos;
+        size++;
+    }
+
+    long incValue(int row) {
+        return incValues[row];
+    }
+
+    long timestampNanos(int row) {
+        return checkTimestamp(timestampNanos[row]);
+    }
+
+    /**
+     * The first row in [from, to) with an incrementing value of at least limit, or to if there is none.
+     */
+    int firstIncAtLeast(int from, int to, long limit) {
+        for (int i = from; i < to; i++) {
+            if (incValues[i] >= limit) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * The first row in [from, to) with a timestamp of at least limit, or to if there is none.
+     */
+    int firstTimestampAtLeast(int from, int to, long limit) {
+        for (int i = from; i < to; i++) {
+            if (checkTimestamp(timestampNanos[i]) >= limit) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static long checkTimestamp(long timestamp) {
+        if (timestamp == missingTimestamp) {
+            throw new IllegalStateException("Every row must contain a timestamp");
+        }
+        return timestamp;
+    }
+
+    /**
+     * Passes the values of the given row to the sink.
+     */
+    void writeRow(int row, ValueSink sink) throws IOException {
+        for (Column c : columns) {
+            c.write(row, sink);
+        }
+    }
+
+    @Override
+    public void writeNull() {
+        columns[column++].setNull(size);
+    }
+
+    @Override
+    public void writeLong(long value) {
+        var c = columns[column++];
+        if (c.use(longKind, size)) {
+            c.longs[size] = value;
+        } else {
+            c.objects[size] = value;
+        }
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        var c = columns[column++];
+        if (c.use(doubleKind, size)) {
+            c.doubles[size] = value;
+        } else {
+            c.objects[size] = value;
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        var c = columns[column++];
+        if (c.use(booleanKind, size)) {
+            c.longs[size] = value ? 1 : 0;
+        } else {
+            c.objects[size] = value;
+        }
+    }
+
+    @Override
+    public void writeString(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        var c = columns[column++];
+        if (c.use(stringKind, size)) {
+            c.offsets[size] = c.bytes.size();
+            c.bytes.writeUtf8(value);
+            c.lengths[size] = c.bytes.size() - c.offsets[size];
+        } else {
+            c.objects[size] = value;
+        }
+    }
+
+    @Override
+    public void writeObject(Object value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        var c = columns[column++];
+        c.use(objectKind, size);
+        c.objects[size] = value;
+    }
+
+    private static final class Column {
+        private final int capacity;
+        private final long[] nulls;
+
+        private byte kind = unset;
+        private long[] longs;
+        private double[] doubles;
+        private ByteArrayBuffer bytes;
+        private int[] offsets;
+        private int[] lengths;
+        private Object[] objects;
+
+        Column(int capacity) {
+            this.capacity = capacity;
+            nulls = new long[(capacity + 63) >>> 6];
+        }
+
+        void clear(int size) {
+            Arrays.fill(nulls, 0, (size + 63) >>> 6, 0L);
+            if (bytes != null) {
+                bytes.reset();
+            }
+            if (objects != null) {
+                // Don't hold on to the values of previous batches
+                Arrays.fill(objects, 0, size, null);
+            }
+        }
+
+        void setNull(int row) {
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * Makes sure the column can hold a value of the given kind in row, returns false if it has to be written
+         * to the objects vector instead.
+         */
+        boolean use(byte wanted, int row) {
+            if (kind == wanted) {
+                return true;
+            }
+            if (kind == unset) {
+                allocate(wanted);
+                kind = wanted;
+                return true;
+            }
+            if (kind != objectKind) {
+                // Columns are read with a single getter so this only happens if a getter mixes types
+                var boxed = new Object[capacity];
+                for (int i = 0; i < row; i++) {
+                    if (!isNull(i)) {
+                        boxed[i] = valueAt(i);
+                    }
+                }
+                longs = null;
+                doubles = null;
+                bytes = null;
+                offsets = null;
+                lengths = null;
+                objects = boxed;
+                kind = objectKind;
+            }
+            return false;
+        }
+
+        private void allocate(byte wanted) {
+            switch (wanted) {
+                case longKind:
+                case booleanKind:
+                    longs = new long[capacity];
+                    break;
+                case doubleKind:
+                    doubles = new double[capacity];
+                    break;
+                case stringKind:
+                    bytes = new ByteArrayBuffer(capacity * 16);
+                    offsets = new int[capacity];
+                    lengths = new int[capacity];
+                    break;
+                default:
+                    objects = new Object[capacity];
+            }
+        }
+
+        private Object valueAt(int row) {
+            var collector = new ValueCollector(1);
+            try {
+                write(row, collector);
+            } catch (IOException e) {
+                throw new IllegalStateException("Collecting values can't fail", e);
+            }
+            return collector.getValues()[0];
+        }
+
+        void write(int row, ValueSink sink) throws IOException {
+            if (isNull(row)) {
+                sink.writeNull();
+                return;
+            }
+            switch (kind) {
+                case longKind:
+                    sink.writeLong(longs[row]);
+                    break;
+                case doubleKind:
+                    sink.writeDouble(doubles[row]);
+                    break;
+                case booleanKind:
+                    sink.writeBoolean(longs[row] != 0);
+                    break;
+                case stringKind:
+                    sink.writeUtf8String(bytes.array(), offsets[row], lengths[row]);
+                    break;
+                case objectKind:
+                    sink.writeObject(objects[row]);
+                    break;
+                default:
+                    sink.writeNull();
+            }
+        }
+    }
+}
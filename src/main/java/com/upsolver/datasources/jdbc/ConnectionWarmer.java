@@ -0,0 +1,93 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.common.datasources.TaskRange;
+import com.upsolver.datasources.jdbc.utils.DaemonThreadFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the connections a task needs shortly before it is expected to run.
+ * Tasks run once their range has ended, so the task following a range is expected one range length after its end.
+ * Borrowing the connections makes the pool validate or replace them ahead of time, so the task doesn't pay for
+ * connection setup after an idle gap.
+ */
+class ConnectionWarmer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+    private final HikariDataSource ds;
+    private final int connections;
+    private final Duration lead;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jdbc-warm-up"));
+
+    private Instant scheduledTask = Instant.MIN;
+
+    ConnectionWarmer(HikariDataSource ds, int connections, Duration lead) {
+        this.ds = ds;
+        this.connections = connections;
+        this.lead = lead;
+    }
+
+    /**
+     * Schedules warming up the connections ahead of the task following the given range, unless already scheduled.
+     */
+    synchronized void taskStarted(TaskRange taskRange) {
+        var length = Duration.between(taskRange.getInclusiveStartTime(), taskRange.getExclusiveEndTime());
+        var nextTask = taskRange.getExclusiveEndTime().plus(length);
+        if (!nextTask.isAfter(scheduledTask)) {
+            return;
+        }
+        scheduledTask = nextTask;
+        var delay = Duration.between(Instant.now(), nextTask.minus(lead));
+        if (!delay.isNegative()) {
+            scheduler.schedule(this::warmUp, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void warmUp() {
+        var pool = ds.getHikariPoolMXBean();
+        if (pool == null) {
+            // Nothing was read yet, so the pool hasn't started
+            return;
+        }
+        var borrowed = new ArrayList<Connection>();
+        try {
+            // Hold them all at once, otherwise the same idle connection would be borrowed every time.
+            // Only idle connections or ones the pool can still open are borrowed, so a running task never waits on
+            // the warm up and the warm up never waits on connections in use
+            for (int i = 0; i < connections && hasFreeCapacity(pool); i++) {
+                borrowed.add(ds.getConnection());
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Failed to warm up connections", e);
+        } finally {
+            for (Connection connection : borrowed) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.warn("Failed to return warmed up connection", e);
+                }
+            }
+        }
+    }
+
+    private boolean hasFreeCapacity(HikariPoolMXBean pool) {
+        return pool.getIdleConnections() > 0 || pool.getTotalConnections() < ds.getMaximumPoolSize();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -2,14 +2,23 @@ package com.upsolver.datasources.jdbc;
 
 import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 
+/**
+ * Writes rows as RFC-4180 CSV encoded in UTF-8.
+ * Values containing a delimiter, quote or line break are quoted and their quotes are doubled.
+ */
 class CsvRowConverter implements RowConverter {
 
     private final TableInfo tableInfo;
 
+    private ByteArrayBuffer buffer;
+    private int column;
+
     CsvRowConverter(TableInfo tableInfo) {
         this.tableInfo = tableInfo;
     }
@@ -19,41 +28,200 @@ class CsvRowConverter implements RowConverter {
         return true;
     }
 
+    @Override
+    public void startRow(ByteArrayBuffer buffer) {
+        this.buffer = buffer;
+        this.column = 0;
+    }
+
+    @Override
+    public void endRow() {
+        buffer.write('\n');
+    }
+
+    private void nextColumn() {
+        if (column++ > 0) {
+            buffer.write(',');
+        }
+    }
+
+    @Override
+    public void writeNull() {
+        nextColumn();
+    }
+
+    @Override
+    public void writeLong(long value) {
+        nextColumn();
+        buffer.writeLong(value);
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        nextColumn();
+        buffer.writeAscii(Double.toString(value));
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        nextColumn();
+        buffer.writeAscii(value ? "true" : "false");
+    }
+
+    @Override
+    public void writeString(String value) {
+        nextColumn();
+        if (value != null) {
+            writeEscaped(value, buffer);
+        }
+    }
 
     @Override
-    public void convertRow(Object[] values, OutputStream os) throws IOException {
-        for (int i = 0; i < values.length; i++) {
-            var value = getEscapedValue(values, i);
-            os.write(value.getBytes());
-            writeCommaOrNewLine(os, i);
+    public void writeUtf8String(byte[] bytes, int offset, int length) {
+        nextColumn();
+        int end = offset + length;
+        // Multi byte UTF-8 sequences never contain ASCII bytes, so the bytes can be checked for quoting directly
+        int special = offset;
+        while (special < end && !needsQuoting(bytes[special])) {
+            special++;
         }
+        if (special == end) {
+            buffer.write(bytes, offset, length);
+            return;
+        }
+        buffer.write('"');
+        int start = offset;
+        for (int i = special; i < end; i++) {
+            if (bytes[i] == '"') {
+                buffer.write(bytes, start, i + 1 - start);
+                buffer.write('"');
+                start = i + 1;
+            }
+        }
+        buffer.write(bytes, start, end - start);
+        buffer.write('"');
     }
 
-    private String getEscapedValue(Object[] values, int i) {
-        var v =  values[i] != null ? values[i].toString() : "";
-        if (v.contains(",")) {
-            return '"' + v.replaceAll("\"", "\"\"") + '"';
+    private static boolean needsQuoting(byte b) {
+        return b == ',' || b == '"' || b == '\n' || b == '\r';
+    }
+
+    @Override
+    public void writeObject(Object value) {
+        nextColumn();
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            writeEscaped((String) value, buffer);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            buffer.writeLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            buffer.writeAscii((Boolean) value ? "true" : "false");
+        } else if (value instanceof Timestamp) {
+            writeTimestamp(((Timestamp) value).toLocalDateTime(), buffer);
+        } else if (value instanceof java.sql.Date) {
+            writeDate(((java.sql.Date) value).toLocalDate(), buffer);
+        } else if (value instanceof LocalDateTime) {
+            writeTimestamp((LocalDateTime) value, buffer);
+        } else if (value instanceof LocalDate) {
+            writeDate((LocalDate) value, buffer);
         } else {
-            return v;
+            writeEscaped(value.toString(), buffer);
         }
+    }
+
+    private static void writeEscaped(String value, ByteArrayBuffer buffer) {
+        int mark = buffer.size();
+        // Most values need no quoting, so optimistically write them as is and start over quoted if needed
+        if (!writeChars(value, buffer, false)) {
+            buffer.setSize(mark);
+            buffer.write('"');
+            writeChars(value, buffer, true);
+            buffer.write('"');
+        }
+    }
 
+    /**
+     * Encodes the value as UTF-8 directly into the buffer.
+     * Returns false as soon as a character that requires quoting is found, unless the value is already quoted.
+     */
+    private static boolean writeChars(String value, ByteArrayBuffer buffer, boolean quoted) {
+        int length = value.length();
+        // Every char takes at most 3 bytes, a doubled quote takes 2 and a surrogate pair takes 4
+        buffer.ensureCapacity(length * 3);
+        byte[] out = buffer.array();
+        int pos = buffer.size();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    if (!quoted) {
+                        return false;
+                    } else if (c == '"') {
+                        out[pos++] = '"';
+                    }
+                }
+                out[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates can't be encoded, same replacement as String.getBytes
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer.setSize(pos);
+        return true;
     }
 
-    private void writeCommaOrNewLine(OutputStream byteArrayOutputStream, int i) throws IOException {
-        if (i < tableInfo.getColumnCount() - 1) {
-            byteArrayOutputStream.write(',');
+    // Same format as Timestamp.toString: yyyy-mm-dd hh:mm:ss.fffffffff without trailing zeros
+    private static void writeTimestamp(LocalDateTime time, ByteArrayBuffer buffer) {
+        writeDate(time.toLocalDate(), buffer);
+        buffer.write(' ');
+        buffer.writePadded(time.getHour(), 2);
+        buffer.write(':');
+        buffer.writePadded(time.getMinute(), 2);
+        buffer.write(':');
+        buffer.writePadded(time.getSecond(), 2);
+        buffer.write('.');
+        int nanos = time.getNano();
+        if (nanos == 0) {
+            buffer.write('0');
         } else {
-            byteArrayOutputStream.write('\n');
+            int width = 9;
+            while (nanos % 10 == 0) {
+                nanos /= 10;
+                width--;
+            }
+            buffer.writePadded(nanos, width);
         }
     }
 
+    private static void writeDate(LocalDate date, ByteArrayBuffer buffer) {
+        buffer.writePadded(date.getYear(), 4);
+        buffer.write('-');
+        buffer.writePadded(date.getMonthValue(), 2);
+        buffer.write('-');
+        buffer.writePadded(date.getDayOfMonth(), 2);
+    }
+
     @Override
-    public void writeHeader(OutputStream os) throws IOException {
-        ColumnInfo[] columns = tableInfo.getColumns();
-        for (int i = 0; i < columns.length; i++) {
-            os.write(columns[i].getName().getBytes());
-            writeCommaOrNewLine(os, i);
+    public void writeHeader(ByteArrayBuffer buffer) {
+        startRow(buffer);
+        for (ColumnInfo columnInfo : tableInfo.getColumns()) {
+            writeString(columnInfo.getName());
         }
-
+        endRow();
     }
 }
@@ -0,0 +1,252 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.utils.ValueSink;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Chooses how many rows the driver fetches per round trip.
+ * Starts from an estimate of the row width based on the column types, then measures the width of sampled rows and
+ * the time spent waiting on every fetch. The fetch size is doubled or halved as long as that improves the rows read
+ * per second, and never exceeds what fits in the memory budget given the measured row width. Once a step in either
+ * direction stops helping the size settles, and is only reconsidered when throughput drifts well away from the
+ * settled level.
+ */
+class FetchSizeController {
+    static final int minFetchSize = 16;
+    static final int maxFetchSize = 64 * 1024;
+    // The first fetch is kept small so the first rows arrive quickly
+    private static final int initialFetchSize = 1000;
+    // Every sampledRowInterval-th row is measured
+    private static final int sampledRowInterval = 64;
+    // Throughput changes smaller than this are treated as noise
+    private static final double throughputTolerance = 0.05;
+    // A settled fetch size is searched again once throughput moves this far from where it settled
+    private static final double settledTolerance = 0.25;
+
+    private final long memoryBudget;
+    private final MeasuringSink measuringSink = new MeasuringSink();
+
+    private int fetchSize;
+    private double rowBytes;
+    private int direction = 1;
+    // After the second reversal both neighbors of the size stepped back to are known to be worse
+    private int reversals = 0;
+    private boolean settled = false;
+    private double settledThroughput = 0;
+    private double previousThroughput = 0;
+    private int rowsInFetch = 0;
+    private long nanosInFetch = 0;
+    private long rowsUntilSample = 0;
+
+    FetchSizeController(double estimatedRowBytes, long memoryBudget) {
+        this.rowBytes = estimatedRowBytes;
+        this.memoryBudget = memoryBudget;
+        this.fetchSize = Math.min(initialFetchSize, memoryLimit());
+    }
+
+    /**
+     * Estimates the width of a row from the column types, assuming variable length columns are mostly short.
+     */
+    static double estimateRowBytes(TableInfo tableInfo, QueryDialect queryDialect) throws SQLException {
+        double result = 0;
+        for (ColumnInfo column : tableInfo.getColumns()) {
+            result += estimateColumnBytes(queryDialect.getJdbcType(column.getType()).getVendorTypeNumber());
+        }
+        return Math.max(result, 1);
+    }
+
+    private static int estimateColumnBytes(Integer sqlType) {
+        if (sqlType == null) {
+            return 32;
+        }
+        switch (sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+                return 1;
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.REAL:
+            case Types.DATE:
+                return 4;
+            case Types.BIGINT:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return 8;
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return 16;
+            case Types.BLOB:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARBINARY:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return 4096;
+            default:
+                return 32;
+        }
+    }
+
+    int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Whether the current row should be measured by passing it through measure
+     */
+    boolean sampleRow() {
+        if (rowsUntilSample-- > 0) {
+            return false;
+        }
+        rowsUntilSample = sampledRowInterval - 1;
+        return true;
+    }
+
+    /**
+     * Returns a sink measuring the values written to it before passing them on to target.
+     * The measurement is recorded by the next call to sampleDone.
+     */
+    ValueSink measure(ValueSink target) {
+        measuringSink.target = target;
+        measuringSink.bytes = 0;
+        return measuringSink;
+    }
+
+    void sampleDone() {
+        // Weigh recent rows more, rows of a table tend to grow over time
+        rowBytes = rowBytes * 0.9 + Math.max(measuringSink.bytes, 1) * 0.1;
+        measuringSink.target = null;
+    }
+
+    /**
+     * Records the time spent moving to the next row. Every fetchSize rows, roughly one round trip to the database,
+     * the fetch size is reconsidered. Returns true if it changed.
+     */
+    boolean rowFetched(long nanos) {
+        nanosInFetch += nanos;
+        if (++rowsInFetch < fetchSize) {
+            return false;
+        }
+        double throughput = rowsInFetch / (double) Math.max(nanosInFetch, 1);
+        rowsInFetch = 0;
+        nanosInFetch = 0;
+        int next = fetchSize;
+        if (!settled) {
+            next = search(throughput);
+        } else if (Math.abs(throughput - settledThroughput) > settledThroughput * settledTolerance) {
+            // The source or the rows changed, look for a better size again from here. The step is compared against
+            // the throughput just measured at the settled size.
+            settled = false;
+            reversals = 0;
+            next = step();
+        }
+        previousThroughput = throughput;
+        next = Math.max(minFetchSize, Math.min(next, memoryLimit()));
+        if (next == fetchSize) {
+            return false;
+        }
+        fetchSize = next;
+        return true;
+    }
+
+    /**
+     * The next size to try while searching. A step that makes throughput worse is taken back, the first time to try
+     * the other direction and the second time to settle on the size stepped back to.
+     */
+    private int search(double throughput) {
+        if (previousThroughput == 0 || throughput > previousThroughput * (1 + throughputTolerance)) {
+            return step();
+        }
+        if (throughput < previousThroughput * (1 - throughputTolerance)) {
+            direction = -direction;
+            if (++reversals == 2) {
+                settle(previousThroughput);
+            }
+            return step();
+        }
+        // Not measurably different, stay here
+        settle(Math.max(throughput, previousThroughput));
+        return fetchSize;
+    }
+
+    private void settle(double throughput) {
+        settled = true;
+        settledThroughput = throughput;
+    }
+
+    private int step() {
+        return direction > 0 ? fetchSize * 2 : fetchSize / 2;
+    }
+
+    private int memoryLimit() {
+        long rows = (long) (memoryBudget / Math.max(rowBytes, 1));
+        return (int) Math.max(minFetchSize, Math.min(rows, maxFetchSize));
+    }
+
+    /**
+     * Approximates the size the values take in the driver's buffers
+     */
+    private static final class MeasuringSink implements ValueSink {
+        private ValueSink target;
+        private long bytes;
+
+        @Override
+        public void writeNull() throws IOException {
+            bytes += 1;
+            target.writeNull();
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            bytes += 8;
+            target.writeLong(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            bytes += 8;
+            target.writeDouble(value);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            bytes += 1;
+            target.writeBoolean(value);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            bytes += value != null ? value.length() : 1;
+            target.writeString(value);
+        }
+
+        @Override
+        public void writeObject(Object value) throws IOException {
+            if (value instanceof String) {
+                bytes += ((String) value).length();
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length;
+            } else {
+                bytes += value != null ? 16 : 1;
+            }
+            target.writeObject(value);
+        }
+
+        @Override
+        public void writeUtf8String(byte[] value, int offset, int length) throws IOException {
+            bytes += length;
+            target.writeUtf8String(value, offset, length);
+        }
+    }
+}
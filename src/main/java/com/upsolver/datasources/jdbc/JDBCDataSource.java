@@ -18,19 +18,30 @@ import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
 import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
 import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.querybuilders.TaskBounds;
+import com.upsolver.datasources.jdbc.utils.ChunkChecksums;
+import com.upsolver.datasources.jdbc.utils.Compression;
+import com.upsolver.datasources.jdbc.utils.DaemonThreadFactory;
 import com.upsolver.datasources.jdbc.utils.NamedPreparedStatment;
+import com.upsolver.datasources.jdbc.utils.NamedQuery;
 import com.upsolver.datasources.jdbc.utils.SQLDriver;
 import com.upsolver.datasources.jdbc.utils.SQLDrivers;
+import com.upsolver.datasources.jdbc.utils.SlowQueryLog;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.JDBCType;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLType;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -38,18 +49,30 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.upsolver.datasources.jdbc.utils.MarkdownEscaper.escape;
 import static java.lang.String.format;
@@ -66,12 +89,45 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
     private static final String tableNameProp = "Table Name";
     private static final String incrementingColumnNameProp = "Incrementing Column";
     private static final String timestampColumnsProp = "Timestamp Columns";
+    private static final String columnsProp = "Columns";
+    private static final String rowFilterProp = "Row Filter";
     private static final String readDelayProp = "Read Delay";
     private static final String fullLoadIntervalProp = "Full Load Interval";
+    private static final String checksumChunksProp = "Checksum Chunks";
+    private static final String fullLoadOutputProp = "Full Load Output";
+    private static final String fullLoadParallelismProp = "Full Load Parallelism";
+    private static final String separateRangeOutputsProp = "Separate Range Outputs";
     private static final String userNameProp = "User Name";
     private static final String passwordProp = "Password";
     private static final String keepSourceTypes = "Keep JDBC source types";
+    private static final String maxShardsProp = "Max Shards";
+    private static final String parallelWindowQueriesProp = "Parallel Window Queries";
+    private static final String columnarBatchSizeProp = "Columnar Batch Size";
+    private static final String outputFormatProp = "Output Format";
+    private static final String avroContentTypeClass = "com.upsolver.common.datasources.contenttypes.AvroContentType";
+    private static final String compressionProp = "Compression";
+    private static final String compressionLevelProp = "Compression Level";
+    private static final String compressionBlockSizeProp = "Compression Block Size";
+    private static final String prefetchBytesProp = "Prefetch Buffer Size";
+    private static final String encodingThreadsProp = "Encoding Threads";
+    private static final String pageSizeProp = "Page Size";
+    private static final String fetchSizeProp = "Fetch Size";
+    private static final String fetchMemoryBudgetProp = "Fetch Memory Budget";
+    private static final String serverSideCursorsProp = "Server Side Cursors";
+    private static final String maxPoolSizeProp = "Max Pool Size";
+    private static final String minIdleConnectionsProp = "Min Idle Connections";
+    private static final String idleTimeoutProp = "Connection Idle Timeout";
+    private static final String maxLifetimeProp = "Max Connection Lifetime";
+    private static final String keepaliveIntervalProp = "Connection Keepalive Interval";
+    private static final String warmUpLeadProp = "Connection Warm Up Lead";
+    private static final String collectMetricsProp = "Collect Metrics";
+    private static final String metricsRegistryProp = "Metrics Registry Class";
+    private static final String slowQueryThresholdProp = "Slow Query Threshold";
+    // Fetch size connection property of earlier versions, used when Fetch Size isn't set
+    private static final String legacyFetchSizeProp = "upsolver.fetchSize";
     private static final SQLDrivers sqlDrivers = new SQLDrivers();
+    // Types whose values are read as longs to split full loads into ranges
+    private static final Set<SQLType> integerTypes = Set.of(JDBCType.TINYINT, JDBCType.SMALLINT, JDBCType.INTEGER, JDBCType.BIGINT);
     private static final List<PropertyDescription> propertyDescriptions =
             Arrays.asList(
                     new SimplePropertyDescription(connectionStringProp, "The connection string that will be used to connect to the database", false),
@@ -82,29 +138,99 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
                     new SimplePropertyDescription(tableNameProp, "The name of the table to read from", false),
                     new SimplePropertyDescription(incrementingColumnNameProp, "The name of the column which has an incrementing value to be used to load data sequentially", true),
                     new SimplePropertyDescription(timestampColumnsProp, "Comma separated list of timestamp columns to use for loading new rows. The fist non-null value will be used. At least one of the values must not be null for each row", true),
+                    new SimplePropertyDescription(columnsProp, "Comma separated list of the columns to read, or of the columns not to read when every name is prefixed with -. The incrementing and timestamp columns must be read. Default is to read all columns", true),
+                    new SimplePropertyDescription(rowFilterProp, "A SQL condition on the columns of the table, only rows matching it are read. For example: tenant_id = 42 AND status <> 'deleted'", true),
                     new SimplePropertyDescription(readDelayProp, "How long (in seconds) to wait before reading rows based on their timestamp. This allows waiting for all transactions of a certain timestamp to complete to avoid loading partial data. Default value is 0", true),
                     new SimplePropertyDescription(fullLoadIntervalProp, "If set the full table will be read every configured interval (in minutes). When this is configured the update time and incrementing columns are not used.", true),
-                    new SimplePropertyDescription(keepSourceTypes, "Keep original data types from source to use string representation", true, false, null, null, null, true, Optional.of("true")));
+                    new SimplePropertyDescription(checksumChunksProp, "Split the rows into this many chunks by a hash of the primary key and have the database compute a checksum of every chunk, so full loads only read the chunks that changed since the previous full load. Requires a primary key and Full Load Output CHANGED_CHUNKS. With Max Shards every shard splits its own rows into this many chunks and keeps their checksums, and a change of the shard count reads every chunk again. Default value is 0, which reads the full table every time", true),
+                    new SimplePropertyDescription(fullLoadOutputProp, "What every full load writes: SNAPSHOT writes every row of the table. CHANGED_CHUNKS writes only the current rows of the chunks whose checksum changed since the previous full load, and nothing when no chunk changed, so the output is a delta that must be applied to the previous loads as upserts by primary key: unchanged rows are left out and deleted rows are not written at all. Requires Checksum Chunks. Default value is SNAPSHOT", true),
+                    new SimplePropertyDescription(fullLoadParallelismProp, "Split full loads into this many ranges of the incrementing column or of an integer primary key, between their smallest and largest values, and read the ranges concurrently each on its own connection. Tables without such a key are split by a hash of the primary key. With Max Shards every shard splits its own rows into this many ranges. Every range is read in its own transaction at a different time, so the full load is not a consistent snapshot: a row updated between two range queries can be read twice or missed when its key moves between ranges. Not used together with Checksum Chunks. Default value is 1, which reads the full table with a single query", true),
+                    new SimplePropertyDescription(separateRangeOutputsProp, "Write every range of a parallel full load as its own output, so the ranges can be consumed concurrently, instead of a single output of the ranges in key order. Ranges already queried keep their connection until they are read, or until the next load of the shard or closing the data source releases them. Default value is false", true),
+                    new SimplePropertyDescription(keepSourceTypes, "Keep original data types from source to use string representation", true, false, null, null, null, true, Optional.of("true")),
+                    new SimplePropertyDescription(maxShardsProp, "The maximum number of shards the table can be read with in parallel. Rows are split between shards by the incrementing column, or by a hash of the primary key if there is no incrementing column. Default value is 1", true),
+                    new SimplePropertyDescription(parallelWindowQueriesProp, "When catching up on several tasks, query each task separately and run up to this many of those queries concurrently on separate connections. Default value is 1, which reads all tasks with a single query", true),
+                    new SimplePropertyDescription(columnarBatchSizeProp, "How many rows to fetch at a time into column vectors, which are checked against the task limits and encoded as a batch. Default value is 1, which reads a row at a time", true),
+                    new SimplePropertyDescription(outputFormatProp, "The format rows are written in: CSV, JSON or AVRO. AVRO writes binary Avro with a schema derived from the column types and always keeps the source types. Default value is JSON when keeping the JDBC source types and CSV otherwise", true),
+                    new SimplePropertyDescription(compressionProp, "Compress the loaded data with NONE or GZIP. Samples are never compressed. Default value is NONE", true),
+                    new SimplePropertyDescription(compressionLevelProp, "Compression level from 1 (fastest) to 9 (smallest). Default value is 6", true),
+                    new SimplePropertyDescription(compressionBlockSizeProp, "How many bytes of rows to compress at a time. Default value is 65536", true),
+                    new SimplePropertyDescription(prefetchBytesProp, "How many bytes of encoded rows to fetch on a background thread ahead of the consumer, so waiting on the database overlaps with writing the data. Default value is 0, which only fetches rows when they are read", true),
+                    new SimplePropertyDescription(encodingThreadsProp, "How many threads encode the rows of each stream in parallel, rows are still read in order on a single connection. Default value is 0, which encodes rows on the thread reading them", true),
+                    new SimplePropertyDescription(pageSizeProp, "Read new rows with queries of at most this many rows, each continuing after the last row of the previous one, so no single query holds the source for the whole read. Requires an incrementing column. Default value is 0, which reads all new rows with a single query", true),
+                    new SimplePropertyDescription(fetchSizeProp, "How many rows the driver fetches from the database at a time. Default value is 0, which adapts the fetch size to the width of the rows and the measured throughput", true),
+                    new SimplePropertyDescription(fetchMemoryBudgetProp, "How many bytes of fetched rows each reader may hold when the fetch size is adapted. Default value is 16777216", true),
+                    new SimplePropertyDescription(serverSideCursorsProp, "Read through server side cursors on databases whose driver otherwise reads whole result sets into memory regardless of the fetch size (MySQL's useCursorFetch). The server then materializes every result in a temporary table before returning rows. Default value is false", true),
+                    new SimplePropertyDescription(maxPoolSizeProp, "The maximum number of connections kept to the database. Default value is Max Shards times the larger of Parallel Window Queries and Full Load Parallelism, a connection for every concurrent query, plus one for capturing plans when the Slow Query Threshold is set", true),
+                    new SimplePropertyDescription(minIdleConnectionsProp, "How many idle connections to keep open between tasks. Default value is 0", true),
+                    new SimplePropertyDescription(idleTimeoutProp, "How long (in seconds) a connection beyond the minimum idle connections may stay idle before it is closed. Default value is 90", true),
+                    new SimplePropertyDescription(maxLifetimeProp, "How long (in seconds) a connection may be used before it is replaced. Should be shorter than any timeout imposed by the database or network. Default value is 1800", true),
+                    new SimplePropertyDescription(keepaliveIntervalProp, "How often (in seconds) idle connections are tested to keep them from being closed by the database or network. Default value is 0, which doesn't test idle connections", true),
+                    new SimplePropertyDescription(warmUpLeadProp, "How long (in seconds) before the next task is expected to open the connections it needs, so it doesn't wait for them after an idle gap. Default value is 0, which opens connections when they are needed", true),
+                    new SimplePropertyDescription(collectMetricsProp, "Collect the rows and bytes read, the time spent fetching, extracting, encoding and waiting for the consumer, the query latencies and the watermark lag, and expose them as a JMX MBean. Default value is false", true),
+                    new SimplePropertyDescription(metricsRegistryProp, "The class name of a MetricsRegistry implementation to also publish the metrics to, setting it collects metrics", true),
+                    new SimplePropertyDescription(slowQueryThresholdProp, "Log queries that take longer than this (in milliseconds) to execute, together with their bound parameters and the execution plan chosen by the database. Default value is 0, which doesn't log queries", true));
 
-    private Optional<Integer> fetchSize = Optional.empty();
+    private int fixedFetchSize = 0;
+    private long fetchMemoryBudget = 16 * 1024 * 1024;
+    private double estimatedRowBytes = 1;
     private long readDelay;
     private long fullLoadIntervalMinutes;
+    private int checksumChunks = 0;
+    private FullLoadOutput fullLoadOutput = FullLoadOutput.SNAPSHOT;
+    private int fullLoadParallelism = 1;
+    private boolean separateRangeOutputs = false;
+    private int maxShards = 1;
+    private int parallelWindowQueries = 1;
+    private int columnarBatchSize = 1;
+    private ExecutorService windowQueryExecutor;
+    private int prefetchBytes = 0;
+    private ExecutorService prefetchExecutor;
+    private int encodingThreads = 0;
+    private ThreadPoolExecutor encodingExecutor;
+    private int pageSize = 0;
     private TableInfo tableInfo;
     private QueryDialect queryDialect;
     private long dbTimezoneOffset;
     private long overallQueryTimeAdjustment;
     private boolean keepTypes = false;
+    private OutputFormat outputFormat = OutputFormat.CSV;
+    private AvroSchema avroSchema;
+    private Compression compression = Compression.NONE;
+    private int compressionLevel = 6;
+    private int compressionBlockSize = 64 * 1024;
     private DataSourceContentType contentType;
-    private RowConverter rowConverter;
 
 
-    private final int connectionIdleTimeout = 90 * 1000;
     private HikariDataSource ds = null;
+    // Null when connections are opened on demand
+    private ConnectionWarmer connectionWarmer;
+    // Null when metrics aren't collected
+    private ReadMetrics metrics;
+    // Null when slow queries aren't logged
+    private SlowQueryLog slowQueryLog;
+    // Concurrent queries of the last task of every shard, closed once the shard moves on so unread ones don't hold connections
+    private final Map<Integer, List<WindowQueryScheduler>> shardSchedulers = new ConcurrentHashMap<>();
 
     private boolean isFullLoad() {
         return fullLoadIntervalMinutes > 0;
     }
 
+    private boolean readsChangedChunks() {
+        return isFullLoad() && fullLoadOutput == FullLoadOutput.CHANGED_CHUNKS && checksumChunks > 0 &&
+                tableInfo.hasPrimaryKey() && queryDialect.canHashKeys();
+    }
+
+    private boolean readsKeyRanges() {
+        if (!isFullLoad() || fullLoadParallelism <= 1 || readsChangedChunks()) {
+            return false;
+        }
+        try {
+            return isShardable(tableInfo) || rangeKeyColumn(tableInfo) != null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to get key column type", e);
+        }
+    }
+
     @Override
     public DataSourceDescription getDataSourceDescription() {
         return new JDBCDataSourceDescription();
@@ -112,39 +238,126 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
 
     @Override
     public int getMaxShards() {
-        return 1;
+        return tableInfo != null && isShardable(tableInfo) ? maxShards : 1;
+    }
+
+    private static void resize(ThreadPoolExecutor executor, int threads) {
+        // The core size may never exceed the maximum size, so the order depends on the direction
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private boolean isShardable(TableInfo tableInfo) {
+        return tableInfo.hasIncColumn() || (tableInfo.hasPrimaryKey() && queryDialect.canHashKeys());
     }
 
     @Override
     public void setProperties(Map<String, String> properties) {
         ds = new HikariDataSource();
         String connectionString = properties.get(connectionStringProp);
-        ds.setMaximumPoolSize(1);
-        ds.setIdleTimeout(connectionIdleTimeout);
-        ds.setMinimumIdle(0);
+        maxShards = Integer.parseInt(properties.getOrDefault(maxShardsProp, "1"));
+        parallelWindowQueries = Integer.parseInt(properties.getOrDefault(parallelWindowQueriesProp, "1"));
+        columnarBatchSize = Integer.parseInt(properties.getOrDefault(columnarBatchSizeProp, "1"));
+        prefetchBytes = Integer.parseInt(properties.getOrDefault(prefetchBytesProp, "0"));
+        if (prefetchBytes > 0 && prefetchExecutor == null) {
+            prefetchExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("jdbc-prefetch"));
+        }
+        encodingThreads = Integer.parseInt(properties.getOrDefault(encodingThreadsProp, "0"));
+        if (encodingThreads > 0 && encodingExecutor == null) {
+            // Shared by all streams, concurrent shards and windows compete for the same cores anyway
+            encodingExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(encodingThreads, new DaemonThreadFactory("jdbc-encode"));
+        } else if (encodingThreads > 0) {
+            // Streams still encoding keep using the same executor, so it is resized rather than replaced
+            resize(encodingExecutor, encodingThreads);
+        }
+        pageSize = Integer.parseInt(properties.getOrDefault(pageSizeProp, "0"));
+        checksumChunks = Integer.parseInt(properties.getOrDefault(checksumChunksProp, "0"));
+        fullLoadOutput = FullLoadOutput.valueOf(properties.getOrDefault(fullLoadOutputProp, "SNAPSHOT").trim().toUpperCase());
+        fullLoadParallelism = Integer.parseInt(properties.getOrDefault(fullLoadParallelismProp, "1"));
+        separateRangeOutputs = Boolean.parseBoolean(properties.getOrDefault(separateRangeOutputsProp, "false"));
+        fetchMemoryBudget = Long.parseLong(properties.getOrDefault(fetchMemoryBudgetProp, String.valueOf(16 * 1024 * 1024)));
+        compression = Compression.valueOf(properties.getOrDefault(compressionProp, "NONE").trim().toUpperCase());
+        compressionLevel = Integer.parseInt(properties.getOrDefault(compressionLevelProp, "6"));
+        compressionBlockSize = Integer.parseInt(properties.getOrDefault(compressionBlockSizeProp, String.valueOf(64 * 1024)));
+        if ((parallelWindowQueries > 1 || fullLoadParallelism > 1) && windowQueryExecutor == null) {
+            windowQueryExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("jdbc-window-query"));
+        }
+        // Shards served by the same instance each need their own connection, as does every concurrent window or range query
+        int connectionsPerTask = maxShards * Math.max(parallelWindowQueries, fullLoadParallelism);
+        // Plans of slow statements are captured on another connection while the slow statement is still streaming
+        long slowQueryThreshold = Long.parseLong(properties.getOrDefault(slowQueryThresholdProp, "0"));
+        int explainConnections = slowQueryThreshold > 0 ? 1 : 0;
+        ds.setMaximumPoolSize(Integer.parseInt(properties.getOrDefault(maxPoolSizeProp, String.valueOf(connectionsPerTask + explainConnections))));
+        ds.setMinimumIdle(Integer.parseInt(properties.getOrDefault(minIdleConnectionsProp, "0")));
+        ds.setIdleTimeout(TimeUnit.SECONDS.toMillis(Long.parseLong(properties.getOrDefault(idleTimeoutProp, "90"))));
+        ds.setMaxLifetime(TimeUnit.SECONDS.toMillis(Long.parseLong(properties.getOrDefault(maxLifetimeProp, "1800"))));
+        ds.setKeepaliveTime(TimeUnit.SECONDS.toMillis(Long.parseLong(properties.getOrDefault(keepaliveIntervalProp, "0"))));
+        long warmUpLead = Long.parseLong(properties.getOrDefault(warmUpLeadProp, "0"));
+        if (connectionWarmer != null) {
+            connectionWarmer.close();
+            connectionWarmer = null;
+        }
+        if (warmUpLead > 0) {
+            connectionWarmer = new ConnectionWarmer(ds, Math.min(connectionsPerTask, ds.getMaximumPoolSize()), Duration.ofSeconds(warmUpLead));
+        }
         String connectionProperties = properties.getOrDefault(connectionPropertiesProp, "");
+        fixedFetchSize = 0;
         if (!connectionProperties.isBlank()) {
             Properties props = new Properties();
             try {
                 props.load(new StringReader(connectionProperties));
-                fetchSize = Optional.ofNullable(props.getProperty("upsolver.fetchSize")).map(Integer::parseInt);
+                fixedFetchSize = Optional.ofNullable(props.getProperty(legacyFetchSizeProp)).map(Integer::parseInt).orElse(0);
                 ds.setDataSourceProperties(props);
             } catch (IOException e) {
                 logger.error("Unable to parse connection properties", e);
                 throw new RuntimeException("Unable to parse connection properties: '" + connectionProperties + "'", e);
             }
         }
+        fixedFetchSize = Integer.parseInt(properties.getOrDefault(fetchSizeProp, String.valueOf(fixedFetchSize)));
         ds.setJdbcUrl(connectionString);
         ds.setUsername(properties.get(userNameProp));
         ds.setPassword(properties.get(passwordProp));
-        keepTypes = Optional.ofNullable(properties.get(keepSourceTypes)).map(Boolean::parseBoolean).orElse(false);
-        contentType = keepTypes ? new JsonDataSourceContentType() : new CSVContentType(true, ',', null, null);
+        keepTypes = keepTypes(properties);
+        outputFormat = outputFormat(properties, keepTypes);
+        switch (outputFormat) {
+            case AVRO:
+                contentType = newAvroContentType();
+                break;
+            case JSON:
+                contentType = new JsonDataSourceContentType();
+                break;
+            default:
+                contentType = new CSVContentType(true, ',', null, null);
+        }
 
-        queryDialect = QueryDialectProvider.forConnection(connectionString, keepTypes);
+        queryDialect = newQueryDialect(connectionString, properties);
         String driverClassName = queryDialect.getDriverClassName();
         if (driverClassName != null) {
             ds.setDriverClassName(driverClassName);
         }
+        // Cache the statements that are prepared again for every task, and when enabled make drivers that read whole
+        // result sets into memory by default honor the fetch size
+        var driverDefaults = new HashMap<>(queryDialect.statementCacheConnectionProperties());
+        if (Boolean.parseBoolean(properties.getOrDefault(serverSideCursorsProp, "false"))) {
+            driverDefaults.putAll(queryDialect.streamingConnectionProperties());
+        }
+        driverDefaults.forEach((key, value) -> {
+            if (!ds.getDataSourceProperties().containsKey(key)) {
+                ds.addDataSourceProperty(key, value);
+            }
+        });
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+            slowQueryLog = null;
+        }
+        if (slowQueryThreshold > 0) {
+            slowQueryLog = new SlowQueryLog(Duration.ofMillis(slowQueryThreshold), queryDialect::explain, ds);
+        }
 
         try (Connection con = getConnection()) {
             readDelay = Long.parseLong(properties.getOrDefault(readDelayProp, "0"));
@@ -152,7 +365,6 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
             DatabaseMetaData metadata = con.getMetaData();
             String userProvidedIncColumn = properties.get(incrementingColumnNameProp);
             tableInfo = loadTableInfo(metadata, properties.getOrDefault(schemaPatternProp, null), properties.get(tableNameProp));
-            rowConverter = keepTypes ? new JsonRowConverter(tableInfo) : new CsvRowConverter(tableInfo);
             var allTimeColumns = new HashSet<String>();
             if (userProvidedIncColumn != null) {
                 tableInfo.setIncColumn(queryDialect.toUpperCaseIfRequired(userProvidedIncColumn));
@@ -173,6 +385,23 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
             if (filteredTimestampColumns.length != 0) {
                 tableInfo.setTimeColumns(filteredTimestampColumns);
             }
+            var columns = properties.getOrDefault(columnsProp, "");
+            if (!columns.isBlank()) {
+                tableInfo.setSelectedColumns(selectColumns(tableInfo.getColumns(), columns, watermarkColumns(tableInfo)));
+            }
+            var rowFilter = properties.getOrDefault(rowFilterProp, "").trim();
+            if (!rowFilter.isEmpty()) {
+                var filterError = rowFilterError(rowFilter);
+                if (filterError != null) {
+                    throw new IllegalArgumentException(filterError);
+                }
+                tableInfo.setRowFilter(rowFilter);
+            }
+            if (outputFormat == OutputFormat.AVRO) {
+                avroSchema = new AvroSchema(tableInfo, queryDialect);
+            }
+            estimatedRowBytes = FetchSizeController.estimateRowBytes(tableInfo, queryDialect);
+            initMetrics(properties);
             dbTimezoneOffset = queryDialect.utcOffsetSeconds(con);
             overallQueryTimeAdjustment = dbTimezoneOffset - readDelay;
         } catch (Exception e) {
@@ -180,13 +409,133 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         }
     }
 
+    private void initMetrics(Map<String, String> properties) throws ReflectiveOperationException {
+        if (metrics != null) {
+            metrics.close();
+            metrics = null;
+        }
+        var registryClass = properties.getOrDefault(metricsRegistryProp, "").trim();
+        var collect = Boolean.parseBoolean(properties.getOrDefault(collectMetricsProp, "false"));
+        if (collect || !registryClass.isEmpty()) {
+            var registry = registryClass.isEmpty() ? null : newMetricsRegistry(registryClass);
+            metrics = new ReadMetrics(queryDialect.fullTableName(tableInfo), registry);
+            metrics.register();
+        }
+    }
+
+    /**
+     * The Avro content type only ships with newer versions of the data source interfaces than the one this is built
+     * against, so it is looked up when Avro output is configured.
+     */
+    private static DataSourceContentType newAvroContentType() {
+        try {
+            return Class.forName(avroContentTypeClass).asSubclass(DataSourceContentType.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("AVRO output is not supported by this version of the data source interfaces", e);
+        }
+    }
+
+    private static MetricsRegistry newMetricsRegistry(String className) throws ReflectiveOperationException {
+        return Class.forName(className).asSubclass(MetricsRegistry.class).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Records the time since startNanos as a call to the QueryDialect method
+     */
+    private void queried(String method, long startNanos) {
+        if (metrics != null) {
+            metrics.query(method, startNanos);
+        }
+    }
+
+    /**
+     * The columns named by the Columns property in table order, or all columns but the named ones when every name is
+     * prefixed with -. Throws IllegalArgumentException if the property is invalid or leaves out a required column.
+     */
+    private static ColumnInfo[] selectColumns(ColumnInfo[] columns, String property, Collection<String> requiredColumns) {
+        var names = Arrays.stream(property.split(",")).map(String::trim).filter(name -> !name.isEmpty()).collect(Collectors.toList());
+        if (names.isEmpty()) {
+            return columns;
+        }
+        var exclude = names.get(0).startsWith("-");
+        var listed = new HashSet<String>();
+        for (String name : names) {
+            if (name.startsWith("-") != exclude) {
+                throw new IllegalArgumentException("Columns must either all be read or all be excluded with -");
+            }
+            var columnName = exclude ? name.substring(1).trim() : name;
+            if (Arrays.stream(columns).noneMatch(column -> column.getName().equalsIgnoreCase(columnName))) {
+                throw new IllegalArgumentException("Could not find column " + columnName);
+            }
+            listed.add(columnName.toUpperCase());
+        }
+        var result = Arrays.stream(columns)
+                .filter(column -> listed.contains(column.getName().toUpperCase()) != exclude)
+                .toArray(ColumnInfo[]::new);
+        if (result.length == 0) {
+            throw new IllegalArgumentException("Columns must leave at least one column to read");
+        }
+        for (String required : requiredColumns) {
+            if (Arrays.stream(result).noneMatch(column -> column.getName().equalsIgnoreCase(required))) {
+                throw new IllegalArgumentException("Column " + required + " must be read, rows are tracked by it");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The filter is placed inside the WHERE clause of every data query, so it must be a single condition that doesn't
+     * end the statement, comment out the rest of the query or close the parentheses it is wrapped in.
+     * Returns the problem with the filter, or null if there is none.
+     */
+    private static String rowFilterError(String rowFilter) {
+        int depth = 0;
+        int i = 0;
+        while (i < rowFilter.length()) {
+            char c = rowFilter.charAt(i);
+            if (rowFilter.startsWith("--", i) || rowFilter.startsWith("/*", i)) {
+                return "Row Filter must not contain comments";
+            }
+            // Quoted literals and identifiers are skipped by the same rules the queries' parameters are parsed by
+            int end = NamedQuery.quotedEnd(rowFilter, i);
+            if (end < 0) {
+                return "Row Filter has an unterminated quote";
+            } else if (end > i) {
+                i = end;
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth < 0) {
+                return "Row Filter has an unmatched closing parenthesis";
+            } else if (c == ';') {
+                return "Row Filter must be a single condition without ;";
+            }
+            i++;
+        }
+        return depth == 0 ? null : "Row Filter has an unmatched opening parenthesis";
+    }
+
+    private static Collection<String> watermarkColumns(TableInfo tableInfo) {
+        var result = new ArrayList<String>();
+        if (tableInfo.hasIncColumn()) {
+            result.add(tableInfo.getIncColumn());
+        }
+        if (tableInfo.hasTimeColumns()) {
+            result.addAll(Arrays.asList(tableInfo.getTimeColumns()));
+        }
+        return result;
+    }
+
     @Override
     public Instant getStartTime() {
         if (isFullLoad()) {
             return Instant.now().minus(fullLoadIntervalMinutes, ChronoUnit.MINUTES);
         } else if (tableInfo.hasTimeColumns()) {
-            try {
-                return queryDialect.getStartTime(tableInfo, getConnection());
+            try (var connection = getConnection()) {
+                long start = System.nanoTime();
+                var result = queryDialect.getStartTime(tableInfo, connection, slowQueryLog);
+                queried("getStartTime", start);
+                return result;
             } catch (SQLException error) {
                 logger.error("Error while getting start time, returning null (start from now)", error);
                 return null;
@@ -228,6 +577,8 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
                 columns.add(new ColumnInfo(colName, sqlType, queryDialect.isAutoIncrementColumn(columnRs), queryDialect.isTimeType(sqlType)));
             }
             var result = new TableInfo(catalog, schema, dbTableName, columns.toArray(ColumnInfo[]::new));
+            result.setPrimaryKeyColumns(loadPrimaryKeyColumns(metadata, catalog, schema, dbTableName));
+            result.setIdentifierQuote(metadata.getIdentifierQuoteString());
 
             if (logger.isDebugEnabled()) {
                 logger.debug("Loading table info: " + result);
@@ -241,6 +592,16 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
 
     }
 
+    private String[] loadPrimaryKeyColumns(DatabaseMetaData metadata, String catalog, String schema, String tableName) throws SQLException {
+        var keyColumns = new TreeMap<Short, String>();
+        try (var keysRs = metadata.getPrimaryKeys(catalog, schema, tableName)) {
+            while (keysRs.next()) {
+                keyColumns.put(keysRs.getShort("KEY_SEQ"), keysRs.getString("COLUMN_NAME"));
+            }
+        }
+        return keyColumns.values().toArray(String[]::new);
+    }
+
     @Override
     public List<PropertyDescription> getPropertyDescriptions() {
         return propertyDescriptions;
@@ -256,14 +617,66 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         JDBCTaskMetadata sampleMetadata =
                 new JDBCTaskMetadata(0L, Long.MAX_VALUE, Instant.EPOCH, toQueryTime(Instant.now()));
         Connection connection = getConnection();
-        var result = queryData(sampleMetadata, 100, connection, true);
+        var result = queryData(sampleMetadata, 100, fixedFetchSize, connection, true, false);
         var rowReader =
-                new RowReader(tableInfo, new ResultSetValuesGetter(tableInfo, result, queryDialect), sampleMetadata, connection, true);
-        var inputStream = new ResultSetInputStream(rowConverter, rowReader, true);
+                new RowReader(tableInfo, new ResultSetValuesGetter(tableInfo, result, queryDialect, columnarBatchSize, null, 0, null, null), sampleMetadata, connection, true);
+        // Samples are shown as they are, so they are never compressed, and aren't counted in the read metrics
+        var inputStream = newRowStream(rowReader, rowConverters(), true, null);
         var loadedData = new LoadedData(inputStream, Instant.now());
         return CompletableFuture.completedFuture(loadedData);
     }
 
+    // Converters may keep per stream state, every stream (and every encoding worker) gets its own
+    private Supplier<RowConverter> rowConverters() {
+        switch (outputFormat) {
+            case AVRO:
+                var sync = AvroRowConverter.newSync();
+                return () -> new AvroRowConverter(avroSchema, sync);
+            case JSON:
+                return () -> new JsonRowConverter(tableInfo);
+            default:
+                return () -> new CsvRowConverter(tableInfo);
+        }
+    }
+
+    private InputStream newInputStream(RowReader rowReader, boolean closeStream) {
+        var rows = newRowStream(rowReader, rowConverters(), closeStream, metrics);
+        return compression.wrap(rows, compressionLevel, compressionBlockSize);
+    }
+
+    private ResultSetInputStream newRowStream(RowReader rowReader, Supplier<RowConverter> converters, boolean closeStream,
+                                              ReadMetrics metrics) {
+        var parallelEncoder = encodingThreads > 0 ? new ParallelRowEncoder(rowReader, converters, encodingExecutor, encodingThreads) : null;
+        return new ResultSetInputStream(converters.get(), rowReader, closeStream, prefetchExecutor, prefetchBytes, parallelEncoder, metrics);
+    }
+
+    private static boolean keepTypes(Map<String, String> properties) {
+        return Optional.ofNullable(properties.get(keepSourceTypes)).map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Avro fields are typed, so with Avro output the values are read with their source types even if they aren't kept
+     */
+    private static QueryDialect newQueryDialect(String connectionString, Map<String, String> properties) {
+        var keepTypes = keepTypes(properties);
+        boolean avro;
+        try {
+            avro = outputFormat(properties, keepTypes) == OutputFormat.AVRO;
+        } catch (IllegalArgumentException e) {
+            // Reported by validate
+            avro = false;
+        }
+        return QueryDialectProvider.forConnection(connectionString, keepTypes || avro);
+    }
+
+    private static OutputFormat outputFormat(Map<String, String> properties, boolean keepTypes) {
+        var format = properties.get(outputFormatProp);
+        if (format == null || format.isBlank()) {
+            return keepTypes ? OutputFormat.JSON : OutputFormat.CSV;
+        }
+        return OutputFormat.valueOf(format.trim().toUpperCase());
+    }
+
     private Connection getConnection() {
         try {
             return ds.getConnection();
@@ -280,28 +693,106 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         return time.minusSeconds(dbTimezoneOffset);
     }
 
-    private ResultSet queryData(JDBCTaskMetadata metadata, int limit, Connection connection, boolean isSample) {
+    /**
+     * @param includeStartTime Whether a query by time reads rows at exactly the start time, which the window they
+     *                         belong to reads with its own query
+     */
+    private ResultSet queryData(JDBCTaskMetadata metadata, int limit, int fetchSize, Connection connection,
+                                boolean isSample, boolean includeStartTime) {
         try {
-            if (isSample || isFullLoad()) {
-                return queryDialect.queryFullTable(tableInfo, metadata, limit, connection).setFetchSize(fetchSize).executeQuery();
+            long start = System.nanoTime();
+            NamedPreparedStatment statement;
+            String method;
+            if (!isSample && readsChangedChunks()) {
+                var changedChunks = changedChunks(metadata, connection);
+                start = System.nanoTime();
+                if (changedChunks != null) {
+                    statement = queryDialect.queryChunks(tableInfo, metadata, checksumChunks, changedChunks, connection, slowQueryLog);
+                    method = "queryChunks";
+                } else {
+                    statement = queryDialect.queryFullTable(tableInfo, metadata, limit, connection, slowQueryLog);
+                    method = "queryFullTable";
+                }
+            } else if (isSample || isFullLoad()) {
+                statement = queryDialect.queryFullTable(tableInfo, metadata, limit, connection, slowQueryLog);
+                method = "queryFullTable";
             } else if (tableInfo.hasTimeColumns()) {
                 if (tableInfo.getIncColumn() != null) {
-                    return queryDialect.queryByIncAndTime(tableInfo, metadata, limit, connection).setFetchSize(fetchSize).executeQuery();
+                    statement = queryDialect.queryByIncAndTime(tableInfo, metadata, limit, includeStartTime, connection, slowQueryLog);
+                    method = "queryByIncAndTime";
                 } else {
-                    return this.queryDialect.queryByTime(this.tableInfo, metadata, limit, connection).setFetchSize(fetchSize).executeQuery();
+                    statement = this.queryDialect.queryByTime(this.tableInfo, metadata, limit, includeStartTime, connection, slowQueryLog);
+                    method = "queryByTime";
                 }
             } else {
-                return queryDialect.queryByInc(tableInfo, metadata, limit, connection).setFetchSize(fetchSize).executeQuery();
+                statement = queryDialect.queryByInc(tableInfo, metadata, limit, connection, slowQueryLog);
+                method = "queryByInc";
             }
+            return executeData(statement, method, start, fetchSize, connection);
         } catch (Exception e) {
-            try {
-                connection.close();
-            } catch (SQLException closeException) {
-                logger.error("Could not close connection", closeException);
+            throw readFailed(connection, e);
+        }
+    }
+
+    /**
+     * Reads the rows of the metadata's key range of a full load split into fullLoadParallelism ranges, or the rows of
+     * the range'th hash chunk of the primary key when there is no key column.
+     */
+    private ResultSet queryRange(JDBCTaskMetadata rangeMetadata, String keyColumn, int range, int fetchSize, Connection connection) {
+        try {
+            long start = System.nanoTime();
+            if (keyColumn != null) {
+                var statement = queryDialect.queryKeyRange(tableInfo, rangeMetadata, keyColumn, connection, slowQueryLog);
+                return executeData(statement, "queryKeyRange", start, fetchSize, connection);
             }
-            logger.error("Error reading table", e);
-            throw new RuntimeException("Error while reading table", e);
+            var statement = queryDialect.queryChunks(tableInfo, rangeMetadata, fullLoadParallelism, new int[]{range}, connection, slowQueryLog);
+            return executeData(statement, "queryChunks", start, fetchSize, connection);
+        } catch (Exception e) {
+            throw readFailed(connection, e);
+        }
+    }
+
+    private ResultSet executeData(NamedPreparedStatment statement, String method, long start, int fetchSize, Connection connection) throws SQLException {
+        if (fetchSize > 0 && queryDialect.streamingRequiresTransaction() && connection.getAutoCommit()) {
+            // Otherwise the driver reads the whole result set regardless of the fetch size
+            connection.setAutoCommit(false);
+        }
+        var result = statement.setFetchSize(fetchSize).executeQuery();
+        queried(method, start);
+        return result;
+    }
+
+    /**
+     * Closes the connection of a failed query, returns the exception to throw
+     */
+    private RuntimeException readFailed(Connection connection, Exception e) {
+        try {
+            connection.close();
+        } catch (SQLException closeException) {
+            logger.error("Could not close connection", closeException);
+        }
+        logger.error("Error reading table", e);
+        return new RuntimeException("Error while reading table", e);
+    }
+
+    /**
+     * The chunks whose checksum changed since the checksums in the metadata, which are replaced with the current ones.
+     * Null when there are no previous checksums of the same chunks and the full table must be read.
+     */
+    private int[] changedChunks(JDBCTaskMetadata metadata, Connection connection) throws SQLException {
+        long start = System.nanoTime();
+        var checksums = queryDialect.chunkChecksums(tableInfo, metadata, checksumChunks, connection, slowQueryLog);
+        queried("chunkChecksums", start);
+        var previous = ChunkChecksums.decode(metadata.getChunkChecksums());
+        var changed = ChunkChecksums.changed(previous, checksums);
+        metadata.setChunkChecksums(ChunkChecksums.encode(checksums));
+        if (changed != null) {
+            // Deleted rows aren't read, chunks that lost all of their rows only show up here
+            var emptied = Arrays.stream(changed).filter(chunk -> checksums[chunk] == 0).count();
+            logger.info("{} of {} chunks of {} changed since the previous full load, {} of them no longer have rows",
+                    changed.length, checksumChunks, tableInfo.getName(), emptied);
         }
+        return changed;
     }
 
     @Override
@@ -311,8 +802,79 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         var user = properties.get(userNameProp);
         var pass = properties.get(passwordProp);
         var timestampColString = properties.get(timestampColumnsProp);
-        queryDialect = QueryDialectProvider.forConnection(connectionString, keepTypes);
+        // The same dialect setProperties creates for these properties, which may already be in use
+        queryDialect = newQueryDialect(connectionString, properties);
         var fullLoad = !properties.getOrDefault(fullLoadIntervalProp, "0").equals("0");
+        var errors = new ArrayList<PropertyError>();
+        int shards = intProperty(properties, maxShardsProp, 1, 1, errors);
+        intProperty(properties, parallelWindowQueriesProp, 1, 1, errors);
+        try {
+            if (outputFormat(properties, false) == OutputFormat.AVRO) {
+                Class.forName(avroContentTypeClass).asSubclass(DataSourceContentType.class).getConstructor();
+            }
+        } catch (IllegalArgumentException e) {
+            errors.add(new PropertyError(outputFormatProp, "Output Format must be one of CSV, JSON or AVRO"));
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            errors.add(new PropertyError(outputFormatProp, "AVRO output is not supported by this version of the data source interfaces"));
+        }
+        intProperty(properties, encodingThreadsProp, 0, 0, errors);
+        intProperty(properties, maxPoolSizeProp, 1, 1, errors);
+        intProperty(properties, minIdleConnectionsProp, 0, 0, errors);
+        longProperty(properties, warmUpLeadProp, 0, 0, errors);
+        longProperty(properties, slowQueryThresholdProp, 0, 0, errors);
+        // The pool replaces values outside its limits with its defaults or disables the setting
+        var idleTimeout = longProperty(properties, idleTimeoutProp, 90, 0, errors);
+        if (idleTimeout > 0 && idleTimeout < 10) {
+            errors.add(new PropertyError(idleTimeoutProp, "Connection Idle Timeout must be at least 10 seconds, or 0 to keep idle connections"));
+        }
+        var maxLifetime = longProperty(properties, maxLifetimeProp, 1800, 0, errors);
+        if (maxLifetime > 0 && maxLifetime < 30) {
+            errors.add(new PropertyError(maxLifetimeProp, "Max Connection Lifetime must be at least 30 seconds, or 0 for no limit"));
+        }
+        var keepalive = longProperty(properties, keepaliveIntervalProp, 0, 0, errors);
+        if (keepalive > 0 && keepalive < 30) {
+            errors.add(new PropertyError(keepaliveIntervalProp, "Connection Keepalive Interval must be at least 30 seconds"));
+        } else if (keepalive > 0 && maxLifetime > 0 && keepalive >= maxLifetime) {
+            errors.add(new PropertyError(keepaliveIntervalProp, "Connection Keepalive Interval must be shorter than the Max Connection Lifetime"));
+        }
+        var registryClass = properties.getOrDefault(metricsRegistryProp, "").trim();
+        if (!registryClass.isEmpty()) {
+            try {
+                Class.forName(registryClass).asSubclass(MetricsRegistry.class).getConstructor();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                errors.add(new PropertyError(metricsRegistryProp,
+                        "Metrics Registry Class must name a MetricsRegistry with a public constructor without arguments"));
+            }
+        }
+        intProperty(properties, fetchSizeProp, 0, 0, errors);
+        longProperty(properties, fetchMemoryBudgetProp, 1, 1, errors);
+        int checksumChunks = intProperty(properties, checksumChunksProp, 0, 0, errors);
+        try {
+            // Skipping unchanged chunks changes what a full load means to the consumer, so it must be asked for
+            var output = FullLoadOutput.valueOf(properties.getOrDefault(fullLoadOutputProp, "SNAPSHOT").trim().toUpperCase());
+            if (output == FullLoadOutput.CHANGED_CHUNKS && checksumChunks == 0) {
+                errors.add(new PropertyError(fullLoadOutputProp, "Full Load Output CHANGED_CHUNKS requires Checksum Chunks"));
+            } else if (output == FullLoadOutput.SNAPSHOT && checksumChunks > 0) {
+                errors.add(new PropertyError(checksumChunksProp, "Checksum Chunks only applies when Full Load Output is CHANGED_CHUNKS"));
+            }
+        } catch (IllegalArgumentException e) {
+            errors.add(new PropertyError(fullLoadOutputProp, "Full Load Output must be one of SNAPSHOT or CHANGED_CHUNKS"));
+        }
+        int fullLoadParallelism = intProperty(properties, fullLoadParallelismProp, 1, 1, errors);
+        int pageSize = intProperty(properties, pageSizeProp, 0, 0, errors);
+        intProperty(properties, prefetchBytesProp, 0, 0, errors);
+        try {
+            Compression.valueOf(properties.getOrDefault(compressionProp, "NONE").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            errors.add(new PropertyError(compressionProp, "Compression must be one of NONE or GZIP"));
+        }
+        if (intProperty(properties, compressionLevelProp, 6, 1, errors) > 9) {
+            errors.add(new PropertyError(compressionLevelProp, "Compression Level must be between 1 and 9"));
+        }
+        intProperty(properties, compressionBlockSizeProp, 64 * 1024, 1024, errors);
+        if (!errors.isEmpty()) {
+            return errors;
+        }
         var timestampCols =
                 timestampColString != null ?
                         Arrays.stream(timestampColString.split(",")).map(String::trim).toArray(String[]::new) : new String[0];
@@ -333,7 +895,13 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
                     properties.get(tableNameProp),
                     properties.get(incrementingColumnNameProp),
                     timestampCols,
-                    fullLoad);
+                    properties.getOrDefault(columnsProp, ""),
+                    properties.getOrDefault(rowFilterProp, "").trim(),
+                    fullLoad,
+                    checksumChunks,
+                    fullLoadParallelism,
+                    shards,
+                    pageSize);
         } catch (SQLException e) {
             Collection<SQLDriver> suitableDrivers = sqlDrivers.getDrivers().stream().filter(driver -> connectionString.startsWith(driver.getUrlPrefix())).collect(Collectors.toList());
             final String errorMessage;
@@ -353,12 +921,52 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         }
     }
 
+    /**
+     * Parses an integer property of at least min, adding an error and returning the default value if it isn't one
+     */
+    private static int intProperty(Map<String, String> properties, String name, int defaultValue, int min, List<PropertyError> errors) {
+        return (int) longProperty(properties, name, defaultValue, min, Integer.MAX_VALUE, errors);
+    }
+
+    private static long longProperty(Map<String, String> properties, String name, long defaultValue, long min, List<PropertyError> errors) {
+        return longProperty(properties, name, defaultValue, min, Long.MAX_VALUE, errors);
+    }
+
+    private static long longProperty(Map<String, String> properties, String name, long defaultValue, long min, long max,
+                                     List<PropertyError> errors) {
+        var value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        final long result;
+        try {
+            result = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            errors.add(new PropertyError(name, name + " must be a number"));
+            return defaultValue;
+        }
+        if (result < min) {
+            errors.add(new PropertyError(name, min == 0 ? name + " must not be negative" : name + " must be at least " + min));
+            return defaultValue;
+        } else if (result > max) {
+            errors.add(new PropertyError(name, name + " must be at most " + max));
+            return defaultValue;
+        }
+        return result;
+    }
+
     private List<PropertyError> validateTableInfo(Connection connection,
                                                   String schemaPattern,
                                                   String tableName,
                                                   String incColumn,
                                                   String[] timestampColumns,
-                                                  boolean fullLoad) {
+                                                  String columns,
+                                                  String rowFilter,
+                                                  boolean fullLoad,
+                                                  int checksumChunks,
+                                                  int fullLoadParallelism,
+                                                  int shards,
+                                                  int pageSize) {
         var result = new ArrayList<PropertyError>();
 
         try {
@@ -395,6 +1003,69 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
                     }
                 }
             }
+            var hasIncColumn = incColumn != null || Arrays.stream(tableInfo.getColumns()).anyMatch(ColumnInfo::isIncCol);
+            var readColumns = tableInfo.getColumns();
+            if (!columns.isBlank()) {
+                // The same watermark columns setProperties picks, the named ones or the first auto-incrementing one
+                var requiredColumns = new ArrayList<String>();
+                if (incColumn != null) {
+                    requiredColumns.add(incColumn);
+                } else {
+                    Arrays.stream(tableInfo.getColumns()).filter(ColumnInfo::isIncCol).findFirst()
+                            .ifPresent(column -> requiredColumns.add(column.getName()));
+                }
+                Arrays.stream(timestampColumns).filter(name -> tableInfo.getColumn(name) != null).forEach(requiredColumns::add);
+                try {
+                    readColumns = selectColumns(tableInfo.getColumns(), columns, requiredColumns);
+                } catch (IllegalArgumentException e) {
+                    result.add(new PropertyError(columnsProp, e.getMessage()));
+                }
+            }
+            if (!rowFilter.isEmpty()) {
+                var filterError = rowFilterError(rowFilter);
+                if (filterError == null) {
+                    filterError = rowFilterQueryError(connection, tableInfo, rowFilter);
+                }
+                if (filterError != null) {
+                    result.add(new PropertyError(rowFilterProp, filterError));
+                }
+            }
+            if (checksumChunks > 0 && !fullLoad) {
+                result.add(new PropertyError(checksumChunksProp, "Checksum Chunks only applies to full loads, Full Load Interval must be set"));
+            } else if (checksumChunks > 0 && !tableInfo.hasPrimaryKey()) {
+                result.add(new PropertyError(checksumChunksProp, "The table has no primary key to split rows into chunks by"));
+            } else if (checksumChunks > 0 && !queryDialect.canHashKeys()) {
+                result.add(new PropertyError(checksumChunksProp, "Splitting rows into chunks by a hash of the primary key is not supported for this database"));
+            } else if (checksumChunks > 0) {
+                var largeObjects = Arrays.stream(readColumns)
+                        .filter(column -> !queryDialect.canChecksum(column.getType()))
+                        .map(ColumnInfo::getName)
+                        .collect(Collectors.joining(", "));
+                if (!largeObjects.isEmpty()) {
+                    result.add(new PropertyError(columnsProp,
+                            "Columns that can't be included in chunk checksums must be left out with Checksum Chunks: " + largeObjects));
+                }
+            }
+            if (fullLoadParallelism > 1 && !fullLoad) {
+                result.add(new PropertyError(fullLoadParallelismProp, "Full Load Parallelism only applies to full loads, Full Load Interval must be set"));
+            } else if (fullLoadParallelism > 1 && !hasIncColumn && !tableInfo.hasPrimaryKey()) {
+                result.add(new PropertyError(fullLoadParallelismProp,
+                        "The table has no incrementing column or primary key to split full loads by"));
+            } else if (fullLoadParallelism > 1 && !hasIncColumn && !queryDialect.canHashKeys() && rangeKeyColumn(tableInfo) == null) {
+                result.add(new PropertyError(fullLoadParallelismProp,
+                        "The primary key is not a single integer column, and splitting full loads by a hash of it is not supported for this database"));
+            }
+            if (pageSize > 0 && !hasIncColumn) {
+                // Time columns aren't unique, so a page can't be continued after the last row of the previous one
+                result.add(new PropertyError(pageSizeProp, "Page Size requires an incrementing column to continue pages from"));
+            }
+            if (shards > 1 && !hasIncColumn && !tableInfo.hasPrimaryKey()) {
+                result.add(new PropertyError(maxShardsProp,
+                        "The table has no incrementing column or primary key to split rows between shards by"));
+            } else if (shards > 1 && !hasIncColumn && !queryDialect.canHashKeys()) {
+                result.add(new PropertyError(maxShardsProp,
+                        "The table has no incrementing column, and splitting rows between shards by a hash of the primary key is not supported for this database"));
+            }
         } catch (IllegalArgumentException e) {
             result.add(new PropertyError(tableNameProp, "Could not load table with name: '" + tableName + "'. " + e.getMessage()));
         } catch (SQLException e) {
@@ -404,13 +1075,30 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         return result;
     }
 
+    /**
+     * Runs the filter through the same parsing and prepared statements as the data queries, so what passes here also
+     * runs there
+     */
+    private String rowFilterQueryError(Connection connection, TableInfo tableInfo, String rowFilter) {
+        var query = NamedQuery.parse("SELECT * FROM " + queryDialect.fullTableName(tableInfo) + " WHERE (" + rowFilter + ") AND 1 = 0");
+        if (query.getParameterCount() > 0) {
+            return "Row Filter must not contain parameters, colons outside quotes start one";
+        }
+        try (var statement = new NamedPreparedStatment(connection, query)) {
+            statement.executeQuery().close();
+            return null;
+        } catch (SQLException e) {
+            return "Row Filter is not a valid condition on the table: " + e.getMessage();
+        }
+    }
+
     @Override
     public CompletionStage<Iterator<DataLoader<JDBCTaskMetadata>>> getDataLoaders(TaskInformation<JDBCTaskMetadata> taskInfo,
                                                                                   List<TaskRange> completedRanges,
                                                                                   List<TaskRange> wantedRanges,
                                                                                   Optional<JDBCTaskMetadata> optional,
                                                                                   ShardDefinition shardDefinition) {
-
+        closeSchedulers(shardDefinition.getShardIndex());
         var taskCount = completedRanges.size() + wantedRanges.size();
         var itemsPerTask = (taskInfo.getMetadata().itemsPerTask(taskCount));
         var emptyFullLoad = isFullLoad() && wantedRanges.stream().noneMatch(this::matchesLoadInterval);
@@ -420,15 +1108,33 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
                     wantedRanges.stream().map(t -> new NoDataLoader(t, taskInfo.getMetadata())).collect(Collectors.toList());
             return CompletableFuture.completedFuture(result.iterator());
         } else {
-            var runMetadatas = getRunMetadatas(taskInfo, taskCount, itemsPerTask, wantedRanges);
+            var runMetadatas = getRunMetadatas(taskInfo, taskCount, itemsPerTask, wantedRanges).stream()
+                    .map(m -> forShard(m, shardDefinition))
+                    .collect(Collectors.toList());
+            if (readsKeyRanges()) {
+                return readKeyRanges(wantedRanges, runMetadatas, taskInfo.getMetadata());
+            }
+            if (parallelWindowQueries > 1 && wantedRanges.size() > 1) {
+                return queryPerWindow(wantedRanges, runMetadatas, taskInfo.getMetadata());
+            }
             var firstMetadata = runMetadatas.get(0);
             var lastMetadata = runMetadatas.get(runMetadatas.size() - 1);
             var queryMetadata = new JDBCTaskMetadata(firstMetadata.getInclusiveStart(), lastMetadata.getExclusiveEnd(),
                     firstMetadata.getStartTime(), lastMetadata.getEndTime())
-                    .adjustWithDelay(dbTimezoneOffset);
+                    .adjustWithDelay(dbTimezoneOffset)
+                    .withShard(firstMetadata.getShardIndex(), firstMetadata.getShardCount());
+            queryMetadata.setChunkChecksums(firstMetadata.getChunkChecksums());
             var connection = getConnection();
-            var resultSet = queryData(queryMetadata, -1, connection, false);
-            return splitData(resultSet, wantedRanges, runMetadatas, connection);
+            var valuesGetter = newValuesGetter(queryMetadata, connection, false);
+            if (isFullLoad()) {
+                // Windows reading the table complete with the checksums of the chunks they read
+                for (int i = 0; i < wantedRanges.size(); i++) {
+                    if (matchesLoadInterval(wantedRanges.get(i))) {
+                        runMetadatas.get(i).setChunkChecksums(queryMetadata.getChunkChecksums());
+                    }
+                }
+            }
+            return splitData(valuesGetter, wantedRanges, runMetadatas, connection);
         }
     }
 
@@ -445,7 +1151,11 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         var wantedIndexStart = taskCount - wantedSize;
         if (isFullLoad()) {
             return wantedRanges.stream()
-                    .map(wr -> new JDBCTaskMetadata(0, 0, wr.getInclusiveStartTime(), wr.getExclusiveEndTime()))
+                    .map(wr -> {
+                        var metadata = new JDBCTaskMetadata(0, 0, wr.getInclusiveStartTime(), wr.getExclusiveEndTime());
+                        metadata.setChunkChecksums(taskInfo.getMetadata().getChunkChecksums());
+                        return metadata;
+                    })
                     .collect(Collectors.toList());
         } else if (tableInfo.hasTimeColumns()) {
             for (int i = 0; i < wantedSize; i++) {
@@ -479,7 +1189,7 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
     }
 
 
-    private CompletionStage<Iterator<DataLoader<JDBCTaskMetadata>>> splitData(ResultSet resultSet,
+    private CompletionStage<Iterator<DataLoader<JDBCTaskMetadata>>> splitData(ResultSetValuesGetter valueGetter,
                                                                               List<TaskRange> wantedRanges,
                                                                               List<JDBCTaskMetadata> runMetadatas,
                                                                               Connection connection) {
@@ -488,48 +1198,354 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
         var lastReadTime = new AtomicReference<>(runMetadatas.get(0).getStartTime());
 
         // Value getter + Some of the code in RowReader are needed only because we insist on running a single query
-        // and using a single result set for all ranges. If we allow query per window a lot of the code can be simplified.
-        var valueGetter = new ResultSetValuesGetter(tableInfo, resultSet, queryDialect);
+        // and using a single result set for all ranges. See queryPerWindow for the query per window alternative.
 
         for (int i = 0; i < wantedRanges.size(); i++) {
             final var isLast = i == wantedRanges.size() - 1;
             final var taskRange = wantedRanges.get(i);
             final var metadata = runMetadatas.get(i);
-            var loader = new DataLoader<JDBCTaskMetadata>() {
-                @Override
-                public TaskRange getTaskRange() {
-                    return taskRange;
+            final var rowReader = new RowReader(tableInfo, valueGetter, metadata, connection, isFullLoad() && matchesLoadInterval(taskRange));
+            result.add(new WindowDataLoader(taskRange, metadata, () -> rowReader, isLast, lastReadIncValue, lastReadTime));
+        }
+        return CompletableFuture.completedFuture(result.iterator());
+
+    }
+
+    /**
+     * Reads every window with its own bounded query and connection, running up to parallelWindowQueries of them
+     * concurrently. Each window's RowReader only has to enforce that window's limits, so readers never hand rows to
+     * each other like they do when sharing a single result set in splitData.
+     */
+    private CompletionStage<Iterator<DataLoader<JDBCTaskMetadata>>> queryPerWindow(List<TaskRange> wantedRanges,
+                                                                                   List<JDBCTaskMetadata> runMetadatas,
+                                                                                   JDBCTaskMetadata taskMetadata) {
+        var result = new ArrayList<DataLoader<JDBCTaskMetadata>>();
+        var lastReadIncValue = new AtomicReference<>(runMetadatas.get(0).getInclusiveStart());
+        var lastReadTime = new AtomicReference<>(runMetadatas.get(0).getStartTime());
+
+        var queries = new ArrayList<Callable<RowReader>>();
+        var loaderQueries = new ArrayList<Integer>();
+        for (int i = 0; i < wantedRanges.size(); i++) {
+            final var taskRange = wantedRanges.get(i);
+            final var metadata = runMetadatas.get(i);
+            final var readAll = isFullLoad() && matchesLoadInterval(taskRange);
+            if (isFullLoad() && !readAll) {
+                loaderQueries.add(-1);
+            } else {
+                final var queryMetadata = windowQueryMetadata(metadata);
+                // Queries by time exclude rows at exactly the start time, which only the first window already read
+                final var includeStartTime = i > 0;
+                loaderQueries.add(queries.size());
+                queries.add(() -> {
+                    var connection = getConnection();
+                    var valuesGetter = newValuesGetter(queryMetadata, connection, includeStartTime);
+                    var rowReader = new RowReader(tableInfo, valuesGetter, metadata, connection, readAll);
+                    metadata.setChunkChecksums(queryMetadata.getChunkChecksums());
+                    return rowReader;
+                });
+            }
+        }
+
+        var scheduler = newScheduler(queries, parallelWindowQueries, runMetadatas.get(0).getShardIndex());
+        scheduler.startAhead(0);
+        for (int i = 0; i < wantedRanges.size(); i++) {
+            var queryIndex = loaderQueries.get(i);
+            if (queryIndex < 0) {
+                result.add(new NoDataLoader(wantedRanges.get(i), taskMetadata));
+            } else {
+                result.add(new WindowDataLoader(wantedRanges.get(i), runMetadatas.get(i), scheduler.readerFor(queryIndex), true, lastReadIncValue, lastReadTime));
+            }
+        }
+        return CompletableFuture.completedFuture(result.iterator());
+    }
+
+    private WindowQueryScheduler newScheduler(List<Callable<RowReader>> queries, int parallelism, int shardIndex) {
+        var scheduler = new WindowQueryScheduler(queries, parallelism, windowQueryExecutor);
+        shardSchedulers.computeIfAbsent(shardIndex, i -> Collections.synchronizedList(new ArrayList<>())).add(scheduler);
+        return scheduler;
+    }
+
+    private void closeSchedulers(int shardIndex) {
+        var schedulers = shardSchedulers.remove(shardIndex);
+        if (schedulers != null) {
+            synchronized (schedulers) {
+                schedulers.forEach(WindowQueryScheduler::close);
+            }
+        }
+    }
+
+    /**
+     * Reads the full table of every window matching the load interval as fullLoadParallelism ranges, queried
+     * concurrently each on its own connection.
+     */
+    private CompletionStage<Iterator<DataLoader<JDBCTaskMetadata>>> readKeyRanges(List<TaskRange> wantedRanges,
+                                                                                  List<JDBCTaskMetadata> runMetadatas,
+                                                                                  JDBCTaskMetadata taskMetadata) {
+        var result = new ArrayList<DataLoader<JDBCTaskMetadata>>();
+        for (int i = 0; i < wantedRanges.size(); i++) {
+            var taskRange = wantedRanges.get(i);
+            if (matchesLoadInterval(taskRange)) {
+                result.add(new KeyRangeDataLoader(taskRange, runMetadatas.get(i)));
+            } else {
+                result.add(new NoDataLoader(taskRange, taskMetadata));
+            }
+        }
+        return CompletableFuture.completedFuture(result.iterator());
+    }
+
+    /**
+     * The queries of the ranges a full load is split into, in key order. Ranges evenly divide the values between the
+     * smallest and largest key, the first and last are open so rows added meanwhile are read as well.
+     */
+    private List<Callable<RowReader>> keyRangeQueries(JDBCTaskMetadata metadata) throws SQLException {
+        var keyColumn = rangeKeyColumn(tableInfo);
+        var rangeMetadatas = new ArrayList<JDBCTaskMetadata>();
+        if (keyColumn == null) {
+            for (int i = 0; i < fullLoadParallelism; i++) {
+                rangeMetadatas.add(metadata);
+            }
+        } else {
+            Optional<TaskBounds> bounds;
+            try (var connection = getConnection()) {
+                long start = System.nanoTime();
+                bounds = queryDialect.keyBounds(tableInfo, metadata, keyColumn, connection, slowQueryLog);
+                queried("keyBounds", start);
+            }
+            long rangeStart = Long.MIN_VALUE;
+            if (bounds.isPresent()) {
+                long min = bounds.get().getMinInc();
+                double span = (double) bounds.get().getMaxInc() - min;
+                for (int i = 1; i < fullLoadParallelism; i++) {
+                    long rangeEnd = min + (long) (span * i / fullLoadParallelism);
+                    if (rangeEnd > rangeStart) {
+                        rangeMetadatas.add(keyRange(metadata, rangeStart, rangeEnd));
+                        rangeStart = rangeEnd;
+                    }
                 }
+            }
+            rangeMetadatas.add(keyRange(metadata, rangeStart, Long.MAX_VALUE));
+        }
+        var queries = new ArrayList<Callable<RowReader>>();
+        for (int i = 0; i < rangeMetadatas.size(); i++) {
+            var rangeMetadata = rangeMetadatas.get(i);
+            var range = i;
+            queries.add(() -> {
+                var connection = getConnection();
+                var fetchSizes = fixedFetchSize > 0 ? null : new FetchSizeController(estimatedRowBytes, fetchMemoryBudget);
+                var resultSet = queryRange(rangeMetadata, keyColumn, range, fetchSize(fetchSizes), connection);
+                var valuesGetter = new ResultSetValuesGetter(tableInfo, resultSet, queryDialect, columnarBatchSize, null, 0, fetchSizes, metrics);
+                return new RowReader(tableInfo, valuesGetter, metadata, connection, true);
+            });
+        }
+        return queries;
+    }
+
+    private static JDBCTaskMetadata keyRange(JDBCTaskMetadata metadata, long inclusiveStart, long exclusiveEnd) {
+        return new JDBCTaskMetadata(inclusiveStart, exclusiveEnd, metadata.getStartTime(), metadata.getEndTime())
+                .withShard(metadata.getShardIndex(), metadata.getShardCount());
+    }
+
+    /**
+     * The incrementing column, or the primary key if it is a single integer column. Null when neither can be split
+     * into ranges and rows are split by a hash of the primary key instead.
+     */
+    private String rangeKeyColumn(TableInfo tableInfo) throws SQLException {
+        if (tableInfo.hasIncColumn()) {
+            return tableInfo.getIncColumn();
+        }
+        var primaryKey = tableInfo.getPrimaryKeyColumns();
+        var column = primaryKey.length == 1 ? tableInfo.getColumn(primaryKey[0]) : null;
+        return column != null && integerTypes.contains(queryDialect.getJdbcType(column.getType())) ? primaryKey[0] : null;
+    }
+
+    /**
+     * Queries the rows of the metadata's range, a page at a time when paging is enabled.
+     */
+    private ResultSetValuesGetter newValuesGetter(JDBCTaskMetadata queryMetadata, Connection connection, boolean includeStartTime) {
+        // Null when the fetch size is configured
+        var fetchSizes = fixedFetchSize > 0 ? null : new FetchSizeController(estimatedRowBytes, fetchMemoryBudget);
+        if (!pagedReads()) {
+            var resultSet = queryData(queryMetadata, -1, fetchSize(fetchSizes), connection, false, includeStartTime);
+            return new ResultSetValuesGetter(tableInfo, resultSet, queryDialect, columnarBatchSize, null, 0, fetchSizes, metrics);
+        }
+        var resultSet = queryData(queryMetadata, pageSize, fetchSize(fetchSizes), connection, false, includeStartTime);
+        ResultSetValuesGetter.NextPage nextPage = (lastIncValue, lastTime) -> {
+            if (!connection.getAutoCommit()) {
+                // Release the snapshot of the previous page
+                connection.commit();
+            }
+            // Rows come in (time, inc) order, so the next page starts right after the last row
+            var startTime = lastTime != null ? lastTime.toInstant() : queryMetadata.getStartTime();
+            var pageMetadata = new JDBCTaskMetadata(lastIncValue + 1, queryMetadata.getExclusiveEnd(), startTime, queryMetadata.getEndTime())
+                    .withShard(queryMetadata.getShardIndex(), queryMetadata.getShardCount());
+            return queryData(pageMetadata, pageSize, fetchSize(fetchSizes), connection, false, false);
+        };
+        return new ResultSetValuesGetter(tableInfo, resultSet, queryDialect, columnarBatchSize, nextPage, pageSize, fetchSizes, metrics);
+    }
+
+    private int fetchSize(FetchSizeController fetchSizes) {
+        return fetchSizes != null ? fetchSizes.getFetchSize() : fixedFetchSize;
+    }
+
+    /**
+     * Pages are continued from the last incrementing value, which is unique unlike the time columns
+     */
+    private boolean pagedReads() {
+        return pageSize > 0 && !isFullLoad() && tableInfo.hasIncColumn();
+    }
+
+    private JDBCTaskMetadata windowQueryMetadata(JDBCTaskMetadata metadata) {
+        var result = new JDBCTaskMetadata(metadata.getInclusiveStart(), metadata.getExclusiveEnd(), metadata.getStartTime(), metadata.getEndTime())
+                .withShard(metadata.getShardIndex(), metadata.getShardCount())
+                .adjustWithDelay(dbTimezoneOffset);
+        result.setChunkChecksums(metadata.getChunkChecksums());
+        return result;
+    }
+
+    private enum OutputFormat {
+        CSV, JSON, AVRO
+    }
+
+    private enum FullLoadOutput {
+        SNAPSHOT, CHANGED_CHUNKS
+    }
 
-                private final RowReader rowReader = new RowReader(tableInfo, valueGetter, metadata, connection, isFullLoad() && matchesLoadInterval(taskRange));
+    private class WindowDataLoader implements DataLoader<JDBCTaskMetadata> {
+        private final TaskRange taskRange;
+        private final JDBCTaskMetadata metadata;
+        private final Callable<RowReader> rowReaderSource;
+        private final boolean closeStream;
+        private final AtomicReference<Long> lastReadIncValue;
+        private final AtomicReference<Instant> lastReadTime;
 
+        private RowReader rowReader;
+
+        WindowDataLoader(TaskRange taskRange,
+                         JDBCTaskMetadata metadata,
+                         Callable<RowReader> rowReaderSource,
+                         boolean closeStream,
+                         AtomicReference<Long> lastReadIncValue,
+                         AtomicReference<Instant> lastReadTime) {
+            this.taskRange = taskRange;
+            this.metadata = metadata;
+            this.rowReaderSource = rowReaderSource;
+            this.closeStream = closeStream;
+            this.lastReadIncValue = lastReadIncValue;
+            this.lastReadTime = lastReadTime;
+        }
+
+        @Override
+        public TaskRange getTaskRange() {
+            return taskRange;
+        }
+
+        @Override
+        public Iterator<LoadedData> loadData() {
+            try {
+                rowReader = rowReaderSource.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Error while reading table", e);
+            }
+            var inputStream = newInputStream(rowReader, closeStream);
+            var result = new LoadedData(inputStream, new HashMap<>(), taskRange.getInclusiveStartTime());
+            return Collections.singleton(result).iterator();
+        }
+
+        @Override
+        public JDBCTaskMetadata getCompletedMetadata() {
+            // Only rows that reached the consumer count, prefetched rows it never read are read again by the next task
+            var delivered = rowReader != null ? rowReader.getDelivered() : RowReader.Watermark.none;
+            if (tableInfo.hasTimeColumns() && delivered.readValues()) {
+                // If some data was successfully read then that's our next start point
+                lastReadTime.set(toUtc(delivered.getTimestamp()));
+                lastReadIncValue.set(delivered.getIncValue());
+                metadata.setExclusiveEnd(lastReadIncValue.get() + 1);
+                metadata.setEndTime(lastReadTime.get());
+            }
+            if (metrics != null) {
+                // Tables without time columns are read up to the end of the task
+                metrics.watermark(tableInfo.hasTimeColumns() ? metadata.getEndTime() : taskRange.getExclusiveEndTime());
+            }
+
+            return metadata;
+        }
+    }
+
+    /**
+     * Loads a full table read as several key ranges, either as a single output of the ranges in key order or as an
+     * output per range. The queries of the following ranges run while a range is read.
+     */
+    private class KeyRangeDataLoader implements DataLoader<JDBCTaskMetadata> {
+        private final TaskRange taskRange;
+        private final JDBCTaskMetadata metadata;
+
+        KeyRangeDataLoader(TaskRange taskRange, JDBCTaskMetadata metadata) {
+            this.taskRange = taskRange;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public TaskRange getTaskRange() {
+            return taskRange;
+        }
+
+        @Override
+        public Iterator<LoadedData> loadData() {
+            List<Callable<RowReader>> queries;
+            try {
+                queries = keyRangeQueries(metadata);
+            } catch (SQLException e) {
+                throw new RuntimeException("Error while splitting table into ranges", e);
+            }
+            var scheduler = newScheduler(queries, fullLoadParallelism, metadata.getShardIndex());
+            scheduler.startAhead(0);
+            var time = taskRange.getInclusiveStartTime();
+            if (separateRangeOutputs) {
+                return IntStream.range(0, queries.size())
+                        .mapToObj(i -> new LoadedData(newInputStream(rangeReader(scheduler, i), true), new HashMap<>(), time))
+                        .iterator();
+            }
+            // Avro blocks of every range must carry the sync marker of the first range's header
+            var converters = rowConverters();
+            var ranges = IntStream.range(0, queries.size())
+                    .mapToObj(i -> i == 0 ?
+                            newRowStream(rangeReader(scheduler, i), converters, true, metrics) :
+                            newRowStream(rangeReader(scheduler, i), converters, true, metrics).withoutHeader())
+                    .iterator();
+            var rows = new SequenceInputStream(new Enumeration<>() {
                 @Override
-                public Iterator<LoadedData> loadData() {
-                    ResultSetInputStream inputStream = new ResultSetInputStream(rowConverter, rowReader, isLast);
-                    var result = new LoadedData(inputStream, new HashMap<>(), taskRange.getInclusiveStartTime());
-                    return Collections.singleton(result).iterator();
+                public boolean hasMoreElements() {
+                    return ranges.hasNext();
                 }
 
                 @Override
-                public JDBCTaskMetadata getCompletedMetadata() {
-                    if (tableInfo.hasTimeColumns() && rowReader.readValues()) {
-                        if (rowReader.readValues()) {
-                            // If some data was successfully read then that's our next start point
-                            lastReadTime.set(toUtc(rowReader.getLastTimestampValue().toInstant()));
-                            lastReadIncValue.set(rowReader.getLastIncValue());
-                        }
-                        metadata.setExclusiveEnd(lastReadIncValue.get() + 1);
-                        metadata.setEndTime(lastReadTime.get());
-                    }
-
-                    return metadata;
+                public InputStream nextElement() {
+                    return ranges.next();
                 }
-            };
-            result.add(loader);
+            });
+            var result = new LoadedData(compression.wrap(rows, compressionLevel, compressionBlockSize), new HashMap<>(), time);
+            return Collections.singleton(result).iterator();
+        }
 
+        private RowReader rangeReader(WindowQueryScheduler scheduler, int range) {
+            try {
+                return scheduler.readerFor(range).call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Error while reading table", e);
+            }
         }
-        return CompletableFuture.completedFuture(result.iterator());
 
+        @Override
+        public JDBCTaskMetadata getCompletedMetadata() {
+            if (metrics != null) {
+                metrics.watermark(taskRange.getExclusiveEndTime());
+            }
+            return metadata;
+        }
     }
 
 
@@ -537,23 +1553,29 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
     public CompletionStage<TaskInformation<JDBCTaskMetadata>> getTaskInfo(JDBCTaskMetadata previousTaskMetadata,
                                                                           TaskRange taskRange,
                                                                           ShardDefinition shardDefinition) {
-        var previous = previousTaskMetadata != null ?
-                previousTaskMetadata : new JDBCTaskMetadata(0, 0);
+        var previous = forShard(previousTaskMetadata != null ?
+                previousTaskMetadata : new JDBCTaskMetadata(0, 0), shardDefinition);
         if (isFullLoad()) {
-            return CompletableFuture.completedFuture(new TaskInformation<>(taskRange, JDBCTaskMetadata.forFullLoad));
+            var metadata = forShard(JDBCTaskMetadata.forFullLoad, shardDefinition);
+            // The next full load only reads the chunks that changed since the previous one
+            metadata.setChunkChecksums(readsChangedChunks() ? previous.getChunkChecksums() : null);
+            return CompletableFuture.completedFuture(new TaskInformation<>(taskRange, metadata));
         } else {
             var startFrom = previous.getExclusiveEnd();
-            try (var connection = getConnection(); var statement = getTaskInfoQuery(previous, taskRange, connection)) {
-                var rs = statement.executeQuery();
-                if (rs.next()) {
-                    var max = tableInfo.hasIncColumn() ? rs.getLong("MAX") : 0;
-                    var min = tableInfo.hasIncColumn() ? rs.getLong("MIN") : 0;
+            if (connectionWarmer != null) {
+                connectionWarmer.taskStarted(taskRange);
+            }
+            try (var connection = getConnection()) {
+                var bounds = getTaskBounds(previous, taskRange, connection);
+                if (bounds.isPresent()) {
+                    var max = tableInfo.hasIncColumn() ? bounds.get().getMaxInc() : 0;
+                    var min = tableInfo.hasIncColumn() ? bounds.get().getMinInc() : 0;
                     var endTime = tableInfo.hasTimeColumns() ? taskRange.getExclusiveEndTime() : null;
                     return CompletableFuture.completedFuture(new TaskInformation<>(taskRange,
-                            new JDBCTaskMetadata(min, max + 1, previous.getEndTime(), endTime)));
+                            forShard(new JDBCTaskMetadata(min, max + 1, previous.getEndTime(), endTime), shardDefinition)));
                 } else {
                     return CompletableFuture.completedFuture(new TaskInformation<>(taskRange,
-                            new JDBCTaskMetadata(startFrom, startFrom, previous.getEndTime(), previous.getEndTime())));
+                            forShard(new JDBCTaskMetadata(startFrom, startFrom, previous.getEndTime(), previous.getEndTime()), shardDefinition)));
                 }
             } catch (Exception e) {
                 throw new RuntimeException("Failed to get task infos", e);
@@ -562,33 +1584,74 @@ public class JDBCDataSource implements ExternalDataSource<JDBCTaskMetadata, JDBC
 
     }
 
-    private NamedPreparedStatment getTaskInfoQuery(JDBCTaskMetadata metadata,
-                                                   TaskRange taskRange,
-                                                   Connection connection) throws SQLException {
+    private Optional<TaskBounds> getTaskBounds(JDBCTaskMetadata metadata,
+                                               TaskRange taskRange,
+                                               Connection connection) throws SQLException {
+        long start = System.nanoTime();
+        Optional<TaskBounds> result;
+        String method;
         if (tableInfo.hasTimeColumns()) {
             Instant maxTime = toQueryTime(taskRange.getExclusiveEndTime());
             if (tableInfo.getIncColumn() != null) {
-                return queryDialect.taskInfoByIncAndTime(tableInfo, metadata, maxTime, connection);
+                result = queryDialect.taskInfoByIncAndTime(tableInfo, metadata, maxTime, connection, slowQueryLog);
+                method = "taskInfoByIncAndTime";
             } else {
-                return queryDialect.taskInfoByTime(tableInfo, metadata, maxTime, connection);
+                result = queryDialect.taskInfoByTime(tableInfo, metadata, maxTime, connection, slowQueryLog);
+                method = "taskInfoByTime";
             }
         } else {
-            return queryDialect.taskInfoByInc(tableInfo, metadata, connection);
+            result = queryDialect.taskInfoByInc(tableInfo, metadata, connection, slowQueryLog);
+            method = "taskInfoByInc";
+        }
+        queried(method, start);
+        return result;
+    }
+
+    private JDBCTaskMetadata forShard(JDBCTaskMetadata metadata, ShardDefinition shardDefinition) {
+        if (shardDefinition == null || getMaxShards() <= 1) {
+            return metadata.withShard(0, 1);
         }
+        return metadata.withShard(shardDefinition.getShardIndex(), shardDefinition.getNumShards());
     }
 
     @Override
     public JDBCTaskMetadata reshard(List<JDBCTaskMetadata> previousTaskMetadatas,
                                     Instant taskTime,
                                     ShardDefinition newShard) {
-        var endValue = previousTaskMetadatas.stream().mapToLong(JDBCTaskMetadata::getExclusiveEnd).max().orElse(-1L);
-        var endTime = previousTaskMetadatas.stream().map(JDBCTaskMetadata::getEndTime)
-                .max(Comparator.naturalOrder()).orElse(null);
-        return new JDBCTaskMetadata(endValue, endValue, endTime, endTime);
+        // Every previous shard tracked its own watermark over a different subset of the rows.
+        // When shards are merged or split the new shard starts from the slowest watermark to make sure no rows are skipped,
+        // rows between the slowest and fastest watermark might be read again.
+        var newShardCount = forShard(JDBCTaskMetadata.forFullLoad, newShard).getShardCount();
+        var sameSharding = previousTaskMetadatas.size() == 1 &&
+                Math.max(previousTaskMetadatas.get(0).getShardCount(), 1) == newShardCount;
+        var endValues = previousTaskMetadatas.stream().mapToLong(JDBCTaskMetadata::getExclusiveEnd);
+        var endTimes = previousTaskMetadatas.stream().map(JDBCTaskMetadata::getEndTime).filter(Objects::nonNull);
+        var endValue = (sameSharding ? endValues.max() : endValues.min()).orElse(-1L);
+        var endTime = (sameSharding ? endTimes.max(Comparator.naturalOrder()) : endTimes.min(Comparator.naturalOrder())).orElse(null);
+        return forShard(new JDBCTaskMetadata(endValue, endValue, endTime, endTime), newShard);
     }
 
     @Override
     public void close() throws Exception {
+        new ArrayList<>(shardSchedulers.keySet()).forEach(this::closeSchedulers);
+        if (windowQueryExecutor != null) {
+            windowQueryExecutor.shutdownNow();
+        }
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+        if (encodingExecutor != null) {
+            encodingExecutor.shutdownNow();
+        }
+        if (connectionWarmer != null) {
+            connectionWarmer.close();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (slowQueryLog != null) {
+            slowQueryLog.close();
+        }
         if (ds != null) {
             ds.close();
         }
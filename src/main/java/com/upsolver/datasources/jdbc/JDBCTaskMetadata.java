@@ -22,6 +22,10 @@ public class JDBCTaskMetadata implements Serializable {
     private long exclusiveEnd;
     private Instant endTime;
     private Instant startTime;
+    private int shardIndex = 0;
+    private int shardCount = 1;
+    // Encoded ChunkChecksums of the previous full load, null when every chunk must be read
+    private String chunkChecksums;
 
     public JDBCTaskMetadata() {
         // Empty Ctor for deserialization
@@ -65,6 +69,22 @@ public class JDBCTaskMetadata implements Serializable {
         return startTime;
     }
 
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public String getChunkChecksums() {
+        return chunkChecksums;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
 
     // Setters are required for deserialization
     public void setInclusiveStart(long inclusiveStart) {
@@ -83,10 +103,32 @@ public class JDBCTaskMetadata implements Serializable {
         this.startTime = startTime;
     }
 
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public void setChunkChecksums(String chunkChecksums) {
+        this.chunkChecksums = chunkChecksums;
+    }
+
+    public JDBCTaskMetadata withShard(int shardIndex, int shardCount) {
+        var result = new JDBCTaskMetadata(inclusiveStart, exclusiveEnd, startTime, endTime);
+        result.shardIndex = shardIndex;
+        result.shardCount = shardCount;
+        result.chunkChecksums = chunkChecksums;
+        return result;
+    }
+
     public JDBCTaskMetadata adjustWithDelay(Long dbOffset) {
         Instant newStartTime = safePlusSeconds(this.startTime, dbOffset);
         Instant newEndTime = safePlusSeconds(this.endTime, dbOffset);
-        return new JDBCTaskMetadata(inclusiveStart, exclusiveEnd, newStartTime, newEndTime);
+        var result = new JDBCTaskMetadata(inclusiveStart, exclusiveEnd, newStartTime, newEndTime).withShard(shardIndex, shardCount);
+        result.chunkChecksums = chunkChecksums;
+        return result;
     }
 
     private Instant safePlusSeconds(Instant time, Long offset) {
@@ -101,7 +143,9 @@ public class JDBCTaskMetadata implements Serializable {
     }
 
     public JDBCTaskMetadata truncateToStart() {
-        return new JDBCTaskMetadata(inclusiveStart, inclusiveStart, startTime, startTime);
+        var result = new JDBCTaskMetadata(inclusiveStart, inclusiveStart, startTime, startTime).withShard(shardIndex, shardCount);
+        result.chunkChecksums = chunkChecksums;
+        return result;
     }
 
 }
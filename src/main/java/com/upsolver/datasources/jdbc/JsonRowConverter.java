@@ -1,20 +1,37 @@
 package com.upsolver.datasources.jdbc;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
 
+/**
+ * Writes every row as a JSON object using a single generator per output buffer.
+ * Column names are encoded once per table and values are written with type specific calls where possible.
+ * A converter keeps generator state so it must not be shared between streams.
+ */
 public class JsonRowConverter implements RowConverter {
-    private final TableInfo tableInfo;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final SerializedString[] columnNames;
+
+    private JsonGenerator generator;
+    private ByteArrayBuffer generatorTarget;
+    private int column;
 
     public JsonRowConverter(TableInfo tableInfo) {
-        this.tableInfo = tableInfo;
+        ColumnInfo[] columns = tableInfo.getColumns();
+        columnNames = new SerializedString[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnNames[i] = new SerializedString(columns[i].getName());
+        }
     }
 
     @Override
@@ -23,18 +40,101 @@ public class JsonRowConverter implements RowConverter {
     }
 
     @Override
-    public void writeHeader(OutputStream os) throws IOException {
+    public void writeHeader(ByteArrayBuffer buffer) throws IOException {
         // no headers
     }
 
     @Override
-    public void convertRow(Object[] values, OutputStream os) throws IOException {
-        ColumnInfo[] columns = tableInfo.getColumns();
-        int n = columns.length;
-        Map<String, Object> map = new LinkedHashMap<>();
-        for (int i = 0; i < n; i++) {
-            map.put(columns[i].getName(), values[i]);
+    public void startRow(ByteArrayBuffer buffer) throws IOException {
+        generator = generatorFor(buffer);
+        column = 0;
+        generator.writeStartObject();
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        generator.writeEndObject();
+        // Flush so the buffer always ends on a row boundary
+        generator.flush();
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        generator.writeNull();
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        generator.writeNumber(value);
+    }
+
+    @Override
+    public void writeDouble(double value) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        generator.writeNumber(value);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        generator.writeBoolean(value);
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        generator.writeString(value);
+    }
+
+    @Override
+    public void writeUtf8String(byte[] bytes, int offset, int length) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        // The generator writes to a byte stream so it escapes and copies the bytes without decoding them
+        generator.writeUTF8String(bytes, offset, length);
+    }
+
+    @Override
+    public void writeObject(Object value) throws IOException {
+        generator.writeFieldName(columnNames[column++]);
+        writeValue(generator, value);
+    }
+
+    private JsonGenerator generatorFor(ByteArrayBuffer buffer) throws IOException {
+        if (generator == null || generatorTarget != buffer) {
+            generator = mapper.getFactory().createGenerator(buffer);
+            // Rows used to be written with separate writeValue calls, keep them concatenated without separators
+            generator.setRootValueSeparator(null);
+            generatorTarget = buffer;
+        }
+        return generator;
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Date) {
+            // Epoch millis, same as the ObjectMapper default
+            generator.writeNumber(((Date) value).getTime());
+        } else {
+            mapper.writeValue(generator, value);
         }
-        mapper.writeValue(os, map);
     }
 }
@@ -0,0 +1,28 @@
+package com.upsolver.datasources.jdbc;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the read metrics of a data source, for example to publish them through a metrics library.
+ * Implementations are configured by class name and need a public constructor without arguments.
+ * Values are registered once as functions, the registry reads them whenever it reports.
+ */
+public interface MetricsRegistry extends AutoCloseable {
+    /**
+     * Registers a value that only grows, such as a number of rows or a total time in nanoseconds
+     */
+    void counter(String name, Map<String, String> tags, LongSupplier value);
+
+    /**
+     * Registers a value that can go up and down
+     */
+    void gauge(String name, Map<String, String> tags, LongSupplier value);
+
+    /**
+     * Called when the data source is closed or reconfigured, the registered functions are not updated afterwards
+     */
+    @Override
+    default void close() {
+    }
+}
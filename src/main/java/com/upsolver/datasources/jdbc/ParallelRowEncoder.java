@@ -0,0 +1,131 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Encodes the rows of a RowReader on a pool of workers and returns the encoded chunks in their original order.
+ * Rows are still read one after the other on the calling thread, so the reader's window limits and watermarks are
+ * exactly the same as when encoding serially. Every chunk of rows is copied into a ColumnBatch and handed to a worker
+ * together with its own converter and output buffer.
+ */
+class ParallelRowEncoder {
+    private static final int rowsPerChunk = 256;
+
+    private final RowReader rowReader;
+    private final ExecutorService executor;
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> encodingChunks = new ArrayDeque<>();
+
+    private Chunk current;
+    private boolean readerExhausted = false;
+
+    /**
+     * Converters must not write headers, all of their blocks are expected to be concatenated after a single header.
+     */
+    ParallelRowEncoder(RowReader rowReader, Supplier<RowConverter> converters, ExecutorService executor, int parallelism) {
+        this.rowReader = rowReader;
+        this.executor = executor;
+        // Twice the workers so rows can be read while every worker is busy
+        for (int i = 0; i < parallelism * 2; i++) {
+            freeChunks.add(new Chunk(new ColumnBatch(rowReader.getColumnCount(), rowsPerChunk), converters.get()));
+        }
+    }
+
+    /**
+     * Returns the next encoded chunk, or null once the reader has no more rows. The chunk is valid until the next call.
+     */
+    ByteArrayBuffer next() throws SQLException, IOException {
+        if (current != null) {
+            freeChunks.add(current);
+            current = null;
+        }
+        while (!readerExhausted && !freeChunks.isEmpty()) {
+            var chunk = freeChunks.poll();
+            readRows(chunk.rows);
+            chunk.watermark = rowReader.readWatermark();
+            if (chunk.rows.size() == 0) {
+                freeChunks.add(chunk);
+                break;
+            }
+            chunk.encoded = executor.submit(chunk::encode);
+            encodingChunks.add(chunk);
+        }
+        var chunk = encodingChunks.poll();
+        if (chunk == null) {
+            return null;
+        }
+        try {
+            chunk.encoded.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding rows");
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        current = chunk;
+        return chunk.output;
+    }
+
+    /**
+     * Where the rows of the chunk last returned by next end
+     */
+    RowReader.Watermark lastWatermark() {
+        return current.watermark;
+    }
+
+    private void readRows(ColumnBatch rows) throws SQLException, IOException {
+        rows.clear();
+        while (rows.size() < rowsPerChunk) {
+            if (!rowReader.next()) {
+                // The reader must not be advanced again, it might be shared with the next window
+                readerExhausted = true;
+                return;
+            }
+            rows.startRow();
+            rowReader.writeValues(rows);
+            // Watermarks are tracked by the reader, the chunk only carries the values
+            rows.endRow(0L, 0L);
+        }
+    }
+
+    private static final class Chunk {
+        private final ColumnBatch rows;
+        private final RowConverter converter;
+        private final ByteArrayBuffer output = new ByteArrayBuffer(16 * 1024);
+        private Future<Void> encoded;
+        private RowReader.Watermark watermark;
+
+        Chunk(ColumnBatch rows, RowConverter converter) {
+            this.rows = rows;
+            this.converter = converter;
+        }
+
+        Void encode() throws IOException {
+            output.reset();
+            for (int row = 0; row < rows.size(); row++) {
+                converter.startRow(output);
+                rows.writeRow(row, converter);
+                converter.endRow();
+            }
+            converter.endBatch(output);
+            return null;
+        }
+    }
+}
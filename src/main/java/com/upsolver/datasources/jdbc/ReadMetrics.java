@@ -0,0 +1,276 @@
+package com.upsolver.datasources.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects the rows and bytes read from a table, the time spent in every stage of reading them and the latency of
+ * the queries. Registered as an MXBean for as long as the data source is configured, and optionally with a
+ * MetricsRegistry.
+ * Readers accumulate their stage times in their own Stages and add them here once per encoded buffer, so timing
+ * rows doesn't contend between streams.
+ */
+class ReadMetrics implements ReadMetricsMXBean, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadMetrics.class);
+    // Data sources of the same table each register their own bean
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final String table;
+    private final MetricsRegistry registry;
+    private final Map<String, String> tags;
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder extractNanos = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder consumerWaitNanos = new LongAdder();
+    // Stages overlap under prefetching and parallel encoding, so rates are based on the wall time of every read
+    private final LongAdder readNanos = new LongAdder();
+    private final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private volatile Instant watermark;
+    private ObjectName objectName;
+
+    ReadMetrics(String table, MetricsRegistry registry) {
+        this.table = table;
+        this.registry = registry;
+        this.tags = Map.of("table", table);
+        if (registry != null) {
+            registry.counter("jdbc.rows", tags, rows::sum);
+            registry.counter("jdbc.bytes", tags, bytes::sum);
+            registry.counter("jdbc.stage.nanos", Map.of("table", table, "stage", "fetch"), fetchNanos::sum);
+            registry.counter("jdbc.stage.nanos", Map.of("table", table, "stage", "extract"), extractNanos::sum);
+            registry.counter("jdbc.stage.nanos", Map.of("table", table, "stage", "encode"), encodeNanos::sum);
+            registry.counter("jdbc.stage.nanos", Map.of("table", table, "stage", "consumer_wait"), consumerWaitNanos::sum);
+            registry.counter("jdbc.read.nanos", tags, readNanos::sum);
+            registry.gauge("jdbc.watermark.lag.millis", tags, this::getWatermarkLagMillis);
+        }
+    }
+
+    /**
+     * Registers the bean with the platform MBean server, failures are logged since reading works without it.
+     */
+    void register() {
+        try {
+            var name = new ObjectName("com.upsolver.datasources.jdbc:type=ReadMetrics" +
+                    ",table=" + ObjectName.quote(table) +
+                    ",instance=" + instances.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException | RuntimeException e) {
+            logger.warn("Failed to register read metrics of {}", table, e);
+        }
+    }
+
+    Stages newStages() {
+        return new Stages();
+    }
+
+    void encoded(long bytes, long encodeNanos) {
+        this.bytes.add(bytes);
+        this.encodeNanos.add(Math.max(encodeNanos, 0));
+    }
+
+    void consumerWait(long nanos) {
+        consumerWaitNanos.add(nanos);
+    }
+
+    /**
+     * Records the wall time of a stream, from its first read until it was closed
+     */
+    void read(long nanos) {
+        readNanos.add(nanos);
+    }
+
+    /**
+     * Records a call to the QueryDialect method that started at startNanos
+     */
+    void query(String method, long startNanos) {
+        queries.computeIfAbsent(method, this::newQueryStats).add(System.nanoTime() - startNanos);
+    }
+
+    void watermark(Instant time) {
+        if (time != null) {
+            watermark = time;
+        }
+    }
+
+    private QueryStats newQueryStats(String method) {
+        var stats = new QueryStats();
+        if (registry != null) {
+            var queryTags = Map.of("table", table, "method", method);
+            registry.counter("jdbc.query.count", queryTags, stats.count::sum);
+            registry.counter("jdbc.query.nanos", queryTags, stats.nanos::sum);
+        }
+        return stats;
+    }
+
+    @Override
+    public String getTable() {
+        return table;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return perSecond(rows.sum());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(bytes.sum());
+    }
+
+    private double perSecond(long amount) {
+        long nanos = readNanos.sum();
+        return nanos > 0 ? amount * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public long getFetchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(fetchNanos.sum());
+    }
+
+    @Override
+    public long getExtractMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(extractNanos.sum());
+    }
+
+    @Override
+    public long getEncodeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(encodeNanos.sum());
+    }
+
+    @Override
+    public long getConsumerWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(consumerWaitNanos.sum());
+    }
+
+    @Override
+    public Map<String, Long> getQueryCounts() {
+        return queryValues(stats -> stats.count.sum());
+    }
+
+    @Override
+    public Map<String, Double> getQueryAverageMillis() {
+        var result = new TreeMap<String, Double>();
+        queries.forEach((method, stats) -> {
+            long count = stats.count.sum();
+            result.put(method, count > 0 ? stats.nanos.sum() / 1e6 / count : 0);
+        });
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getQueryMaxMillis() {
+        return queryValues(stats -> TimeUnit.NANOSECONDS.toMillis(stats.maxNanos.get()));
+    }
+
+    private Map<String, Long> queryValues(ToLongFunction<QueryStats> value) {
+        var result = new TreeMap<String, Long>();
+        queries.forEach((method, stats) -> result.put(method, value.applyAsLong(stats)));
+        return result;
+    }
+
+    @Override
+    public long getWatermarkLagMillis() {
+        var time = watermark;
+        return time != null ? Math.max(Instant.now().toEpochMilli() - time.toEpochMilli(), 0) : -1;
+    }
+
+    @Override
+    public void close() {
+        if (objectName != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister read metrics of {}", table, e);
+            }
+            objectName = null;
+        }
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    private static final class QueryStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void add(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * The stage times of a single reader, only used by the thread reading its rows.
+     */
+    final class Stages {
+        private long rows;
+        private long fetchNanos;
+        private long extractNanos;
+        // Next page queries, recorded as queries but not part of any stage
+        private long pageQueryNanos;
+
+        private Stages() {
+        }
+
+        void fetched(long nanos, boolean hasRow) {
+            if (hasRow) {
+                rows++;
+            }
+            fetchNanos += nanos;
+        }
+
+        void extracted(long nanos) {
+            extractNanos += nanos;
+        }
+
+        void pageQueried(long nanos) {
+            pageQueryNanos += nanos;
+        }
+
+        /**
+         * Time accumulated since the last flush, the rest of the time spent encoding a buffer is encoding
+         */
+        long pendingNanos() {
+            return fetchNanos + extractNanos + pageQueryNanos;
+        }
+
+        void flush() {
+            ReadMetrics.this.rows.add(rows);
+            ReadMetrics.this.fetchNanos.add(fetchNanos);
+            ReadMetrics.this.extractNanos.add(extractNanos);
+            rows = 0;
+            fetchNanos = 0;
+            extractNanos = 0;
+            pageQueryNanos = 0;
+        }
+    }
+}
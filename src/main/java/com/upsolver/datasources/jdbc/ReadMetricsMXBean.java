@@ -0,0 +1,58 @@
+package com.upsolver.datasources.jdbc;
+
+import java.util.Map;
+
+/**
+ * The read metrics of a data source as exposed over JMX.
+ * Stage times are totals since the data source was configured, comparing them shows which stage limits the reads.
+ */
+public interface ReadMetricsMXBean {
+    String getTable();
+
+    long getRowsRead();
+
+    /**
+     * Encoded bytes before compression
+     */
+    long getBytesRead();
+
+    /**
+     * Rows per second of time spent reading streams, idle time between tasks doesn't count.
+     * Concurrent streams each count their own time, so this is the average rate of a single stream
+     */
+    double getRowsPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * Time spent waiting for the driver to return rows
+     */
+    long getFetchMillis();
+
+    /**
+     * Time spent reading values from the result set. When reading a row at a time values are extracted straight into
+     * the converter, so this includes encoding them.
+     */
+    long getExtractMillis();
+
+    long getEncodeMillis();
+
+    /**
+     * Time encoded rows waited for the consumer to read them
+     */
+    long getConsumerWaitMillis();
+
+    /**
+     * Executions of every QueryDialect method, for queries including the time until the first rows arrive
+     */
+    Map<String, Long> getQueryCounts();
+
+    Map<String, Double> getQueryAverageMillis();
+
+    Map<String, Long> getQueryMaxMillis();
+
+    /**
+     * How far the watermark of the last completed task is behind the current time, -1 before any task completed
+     */
+    long getWatermarkLagMillis();
+}
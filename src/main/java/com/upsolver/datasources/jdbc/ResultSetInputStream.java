@@ -1,48 +1,162 @@
 package com.upsolver.datasources.jdbc;
 
-import java.io.ByteArrayOutputStream;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Encodes the rows of a RowReader into a stream.
+ * When created with a prefetch executor, rows are fetched and encoded on a background thread into a fixed number of
+ * buffers while the previous ones are being read, so waiting on the database and on the consumer overlap.
+ * With a ParallelRowEncoder, rows are still read in order but encoded on its workers.
+ * With ReadMetrics, every filled buffer records its size and the time spent encoding it, the time the reader spent
+ * fetching and extracting rows meanwhile is excluded and flushed separately.
+ * The rows of a buffer are only marked as delivered on the RowReader once the buffer was read to its end, so the
+ * watermark never gets ahead of what the consumer received.
+ * Closing waits for the background thread to stop using the reader. If it is still blocked fetching rows after a
+ * timeout its query is cancelled, and if even that doesn't stop it in time it closes the reader itself once it stops.
+ */
 public class ResultSetInputStream extends InputStream {
+    private static final Logger logger = LoggerFactory.getLogger(ResultSetInputStream.class);
+    // Rows are encoded into the buffer until it holds at least this many bytes
+    private static final int targetFillSize = 64 * 1024;
+    // Queued by the prefetching thread after the last buffer
+    private static final ByteArrayBuffer endOfRows = new ByteArrayBuffer(0);
+
     private RowConverter rowConverter;
     private final RowReader rowReader;
 
-    private byte[] buffer;
+    private ByteArrayBuffer buffer;
     private int position;
+    // Null once the current buffer was delivered
+    private RowReader.Watermark bufferWatermark;
     private boolean wroteHeader = false;
+    private boolean exhausted = false;
+    // Null when rows are encoded by the thread reading them
+    private final ParallelRowEncoder parallelEncoder;
+    // Null when metrics aren't collected
+    private final ReadMetrics metrics;
+    // When the last buffer was filled on the calling thread, the time until the next fill is spent by the consumer
+    private long lastFillEnd = 0;
+    // When the stream was first read, 0 until then
+    private long readStart = 0;
+
+    // Null when rows are read on the calling thread
+    private final ExecutorService prefetchExecutor;
+    private final BlockingQueue<ByteArrayBuffer> freeBuffers;
+    private final BlockingQueue<ByteArrayBuffer> filledBuffers;
+    // Added right before the buffer they belong to
+    private final BlockingQueue<RowReader.Watermark> filledWatermarks;
+    // Where the reader ended, set before endOfRows is queued when all rows were read without errors
+    private volatile RowReader.Watermark finalWatermark;
+    private CountDownLatch prefetchDone;
+    private volatile Exception prefetchError;
+    private volatile boolean closed = false;
+    // How long close waits for the background thread, both before and after cancelling its query
+    private long closeTimeoutMillis = 10_000;
+    // Guarded by this, set once the background thread no longer uses the reader
+    private boolean prefetchStopped = false;
+    // Guarded by this, set when close gave up waiting and left closing the reader to the background thread
+    private boolean closeAfterPrefetch = false;
 
     // If we had an error we close the stream regardless of the passed closeStream value
-    private boolean hadError = false;
+    private volatile boolean hadError = false;
     private final boolean closeStream;
 
 
     public ResultSetInputStream(RowConverter rowConverter, RowReader rowReader, boolean closeStream) {
+        this(rowConverter, rowReader, closeStream, null, 0, null, null);
+    }
+
+    /**
+     * Prefetches up to prefetchBytes of encoded rows ahead of the reader using the executor.
+     * The background thread only starts on the first read, after the previous stream sharing the RowReader's result
+     * set has been read.
+     */
+    public ResultSetInputStream(RowConverter rowConverter,
+                                RowReader rowReader,
+                                boolean closeStream,
+                                ExecutorService prefetchExecutor,
+                                int prefetchBytes,
+                                ParallelRowEncoder parallelEncoder,
+                                ReadMetrics metrics) {
         this.rowConverter = rowConverter;
+        this.parallelEncoder = parallelEncoder;
+        this.metrics = metrics;
         this.rowReader = rowReader;
         this.closeStream = closeStream;
+        this.prefetchExecutor = prefetchBytes > 0 ? prefetchExecutor : null;
+        if (this.prefetchExecutor != null) {
+            // One buffer is being read while the others are filled
+            int bufferCount = Math.max(2, prefetchBytes / targetFillSize + 1);
+            freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+            for (int i = 0; i < bufferCount; i++) {
+                freeBuffers.add(newBuffer());
+            }
+            filledBuffers = new LinkedBlockingQueue<>();
+            filledWatermarks = new LinkedBlockingQueue<>();
+        } else {
+            freeBuffers = null;
+            filledBuffers = null;
+            filledWatermarks = null;
+            buffer = newBuffer();
+        }
+    }
+
+    /**
+     * Leaves out the header, for streams that continue another stream of the same table
+     */
+    ResultSetInputStream withoutHeader() {
+        wroteHeader = true;
+        return this;
+    }
+
+    ResultSetInputStream withCloseTimeout(long millis) {
+        closeTimeoutMillis = millis;
+        return this;
+    }
+
+    private static ByteArrayBuffer newBuffer() {
+        return new ByteArrayBuffer(targetFillSize + targetFillSize / 4);
     }
 
     private boolean ensureBuffer() throws SQLException, IOException {
+        if (metrics != null && readStart == 0) {
+            readStart = System.nanoTime();
+        }
         try {
-            if (buffer != null && position < buffer.length) {
+            if (buffer != null && position < buffer.size()) {
                 return true;
+            } else if (exhausted) {
+                return false;
+            } else if (prefetchExecutor != null) {
+                return nextPrefetched();
             } else {
-                if (rowReader.next()) {
-                    var byteArrayOutputStream = new ByteArrayOutputStream();
-                    if (!wroteHeader && rowConverter.hasHeader()) {
-                        rowConverter.writeHeader(byteArrayOutputStream);
-                        wroteHeader = true;
-                    }
-                    Object[] values = rowReader.getValues();
-                    rowConverter.convertRow(values, byteArrayOutputStream);
-                    byteArrayOutputStream.close();
-                    position = 0;
-                    buffer = byteArrayOutputStream.toByteArray();
-                    return true;
+                if (metrics != null && lastFillEnd != 0) {
+                    metrics.consumerWait(System.nanoTime() - lastFillEnd);
                 }
-                return false;
+                position = 0;
+                exhausted = fill(buffer);
+                bufferWatermark = filledWatermark(exhausted);
+                if (metrics != null) {
+                    lastFillEnd = System.nanoTime();
+                }
+                if (buffer.size() == 0) {
+                    bufferRead();
+                    return false;
+                }
+                return true;
             }
         } catch (Exception e) {
             hadError = true;
@@ -50,11 +164,190 @@ public class ResultSetInputStream extends InputStream {
         }
     }
 
+    /**
+     * Encodes rows into the buffer until it reaches the target size. Returns true once the reader has no more rows.
+     */
+    private boolean fill(ByteArrayBuffer target) throws SQLException, IOException {
+        target.reset();
+        if (metrics == null) {
+            return fillRows(target);
+        }
+        var stages = rowReader.getStages();
+        long stagesBefore = stages != null ? stages.pendingNanos() : 0;
+        long start = System.nanoTime();
+        boolean readerExhausted = fillRows(target);
+        long elapsed = System.nanoTime() - start;
+        if (stages != null) {
+            elapsed -= stages.pendingNanos() - stagesBefore;
+            stages.flush();
+        }
+        metrics.encoded(target.size(), elapsed);
+        return readerExhausted;
+    }
+
+    /**
+     * Where the rows of the buffer just filled end. Once the reader is exhausted that includes the rows it skipped
+     * after the last one encoded.
+     */
+    private RowReader.Watermark filledWatermark(boolean readerExhausted) {
+        return parallelEncoder != null && !readerExhausted ? parallelEncoder.lastWatermark() : rowReader.readWatermark();
+    }
+
+    private void bufferRead() {
+        if (bufferWatermark != null) {
+            rowReader.delivered(bufferWatermark);
+            bufferWatermark = null;
+        }
+    }
+
+    private boolean fillRows(ByteArrayBuffer target) throws SQLException, IOException {
+        if (parallelEncoder != null) {
+            return fillEncoded(target);
+        }
+        boolean readerExhausted = false;
+        while (target.size() < targetFillSize) {
+            if (!rowReader.next()) {
+                // The reader must not be advanced again, it might be shared with the next window
+                readerExhausted = true;
+                break;
+            }
+            if (!wroteHeader && rowConverter.hasHeader()) {
+                rowConverter.writeHeader(target);
+                wroteHeader = true;
+            }
+            rowConverter.startRow(target);
+            rowReader.writeValues(rowConverter);
+            rowConverter.endRow();
+        }
+        rowConverter.endBatch(target);
+        return readerExhausted;
+    }
+
+    private boolean fillEncoded(ByteArrayBuffer target) throws SQLException, IOException {
+        while (target.size() < targetFillSize) {
+            var chunk = parallelEncoder.next();
+            if (chunk == null) {
+                return true;
+            }
+            if (!wroteHeader && rowConverter.hasHeader()) {
+                rowConverter.writeHeader(target);
+                wroteHeader = true;
+            }
+            target.write(chunk.array(), 0, chunk.size());
+        }
+        return false;
+    }
+
+    private boolean nextPrefetched() throws SQLException, IOException {
+        if (prefetchDone == null) {
+            prefetchDone = new CountDownLatch(1);
+            prefetchExecutor.execute(this::prefetch);
+        }
+        if (buffer != null) {
+            freeBuffers.add(buffer);
+        }
+        try {
+            buffer = filledBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rows");
+        }
+        position = 0;
+        if (buffer == endOfRows) {
+            exhausted = true;
+            if (finalWatermark != null) {
+                rowReader.delivered(finalWatermark);
+            }
+            var error = prefetchError;
+            if (error instanceof SQLException) {
+                throw (SQLException) error;
+            } else if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw new IOException(error);
+            }
+            return false;
+        }
+        bufferWatermark = filledWatermarks.poll();
+        return true;
+    }
+
+    private void prefetch() {
+        try {
+            boolean readerExhausted = false;
+            while (!readerExhausted) {
+                var target = takeFreeBuffer();
+                if (target == null) {
+                    break;
+                }
+                readerExhausted = fill(target);
+                var watermark = filledWatermark(readerExhausted);
+                if (target.size() > 0) {
+                    filledWatermarks.add(watermark);
+                    filledBuffers.add(target);
+                } else {
+                    freeBuffers.add(target);
+                }
+                if (readerExhausted) {
+                    finalWatermark = watermark;
+                }
+            }
+        } catch (Exception e) {
+            hadError = true;
+            prefetchError = e;
+        } finally {
+            filledBuffers.add(endOfRows);
+            prefetchDone.countDown();
+            prefetchStopped();
+        }
+    }
+
+    private void prefetchStopped() {
+        synchronized (this) {
+            prefetchStopped = true;
+            if (!closeAfterPrefetch) {
+                return;
+            }
+        }
+        try {
+            closeReader();
+        } catch (Exception e) {
+            logger.warn("Failed to close the rows of a closed stream", e);
+        }
+    }
+
+    /**
+     * Waits until the reader hands a buffer back, or returns null if the stream was closed meanwhile.
+     */
+    private ByteArrayBuffer takeFreeBuffer() {
+        try {
+            long start = System.nanoTime();
+            while (!closed) {
+                var free = freeBuffers.poll(100, TimeUnit.MILLISECONDS);
+                if (free != null) {
+                    if (metrics != null) {
+                        metrics.consumerWait(System.nanoTime() - start);
+                    }
+                    return free;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
     @Override
     public int read() throws IOException {
         try {
             if (ensureBuffer()) {
-                return buffer[position++];
+                int value = buffer.array()[position++] & 0xFF;
+                if (position == buffer.size()) {
+                    bufferRead();
+                }
+                return value;
             } else {
                 return -1;
             }
@@ -65,11 +358,17 @@ public class ResultSetInputStream extends InputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
         try {
             if (ensureBuffer()) {
-                int toRead = Math.min(len, buffer.length - position);
-                System.arraycopy(buffer, position, b, off, toRead);
+                int toRead = Math.min(len, buffer.size() - position);
+                System.arraycopy(buffer.array(), position, b, off, toRead);
                 position += toRead;
+                if (position == buffer.size()) {
+                    bufferRead();
+                }
                 return toRead;
             }
             return -1;
@@ -82,7 +381,7 @@ public class ResultSetInputStream extends InputStream {
     public int available() throws IOException {
         try {
             if (ensureBuffer()) {
-                return buffer.length - position;
+                return buffer.size() - position;
             }
             return 0;
         } catch (SQLException e) {
@@ -92,13 +391,52 @@ public class ResultSetInputStream extends InputStream {
 
     @Override
     public void close() throws IOException {
+        if (metrics != null && readStart != 0) {
+            metrics.read(System.nanoTime() - readStart);
+            readStart = 0;
+        }
+        closed = true;
         try {
-            if (hadError || closeStream) {
-                rowReader.close();
+            // The reader can only be closed once the background thread stopped using it
+            if (prefetchDone != null && !awaitPrefetch()) {
+                return;
             }
+            closeReader();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the stream");
         } catch (Exception e) {
             throw new IOException(e);
         }
     }
-}
 
+    /**
+     * Waits for the background thread to stop, cancelling the query it is fetching rows from if it takes too long.
+     * Returns false when it still didn't stop, closing the reader is then left to it.
+     */
+    private boolean awaitPrefetch() throws InterruptedException {
+        if (prefetchDone.await(closeTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        // A cancelled query can't be continued by the next stream, so the reader is closed either way
+        hadError = true;
+        try {
+            rowReader.cancel();
+        } catch (SQLException e) {
+            logger.warn("Failed to cancel the query of a closed stream", e);
+        }
+        if (prefetchDone.await(closeTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        synchronized (this) {
+            closeAfterPrefetch = !prefetchStopped;
+            return prefetchStopped;
+        }
+    }
+
+    private void closeReader() throws Exception {
+        if (hadError || closeStream) {
+            rowReader.close();
+        }
+    }
+}
@@ -2,40 +2,112 @@ package com.upsolver.datasources.jdbc;
 
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
 import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
-import com.upsolver.datasources.jdbc.utils.ThrowingBiFunction;
+import com.upsolver.datasources.jdbc.utils.InstantMath;
+import com.upsolver.datasources.jdbc.utils.ValueGetter;
+import com.upsolver.datasources.jdbc.utils.ValueSink;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * Reads the rows of a result set either one at a time or, when created with a batch size, a batch at a time into
+ * a {@link ColumnBatch}. In batch mode RowReader can check the window limits over the whole batch at once.
+ * When created with a NextPage, the result set is the first page of a keyset paginated read and the following pages
+ * are queried once it is fully read, so readers see a single stream of rows.
+ * When created with a FetchSizeController, the fetch size of the result set follows its measurements.
+ * When created with ReadMetrics, the time spent fetching and extracting rows is accumulated in its own Stages.
+ */
 class ResultSetValuesGetter implements AutoCloseable {
     private final TableInfo tableInfo;
-    private final ResultSet underlying;
+    private ResultSet underlying;
+    // The same result set, for cancelling its query from another thread
+    private volatile ResultSet cancelable;
     private final ResultSetMetaData md;
-    private final List<ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> valueGetters;
+    private final int columnCount;
+    private final ValueGetter[] valueGetters;
+    // Watermark columns are looked up by name once instead of on every row
+    private final int incColumnIndex;
+    private final int[] timeColumnIndices;
+    // Null when reading a row at a time
+    private final ColumnBatch batch;
+
+    private int batchRow = -1;
+    private long batchNumber = 0;
+    private boolean exhausted = false;
+
+    // Null when the result set holds every row
+    private final NextPage nextPage;
+    private final int pageSize;
+    private int pageRows = 0;
+    private long pageLastIncValue;
+    private Timestamp pageLastTime;
+
+    // Null when the fetch size is fixed
+    private FetchSizeController fetchSizes;
+    // Null when metrics aren't collected
+    private final ReadMetrics.Stages stages;
 
     private Object[] nextValues = null;
     private long nextIncValue;
-    private Timestamp nextTimestampValue;
+    private long nextTimestampValue;
     private boolean onNextValues = false;
 
     ResultSetValuesGetter(TableInfo tableInfo, ResultSet underlying, QueryDialect queryDialect) {
+        this(tableInfo, underlying, queryDialect, 1);
+    }
+
+    ResultSetValuesGetter(TableInfo tableInfo, ResultSet underlying, QueryDialect queryDialect, int batchSize) {
+        this(tableInfo, underlying, queryDialect, batchSize, null, 0, null, null);
+    }
+
+    /**
+     * Reads underlying as the first page of at most pageSize rows, ordered by the time and incrementing columns.
+     * Without a NextPage the result set holds every row.
+     */
+    ResultSetValuesGetter(TableInfo tableInfo,
+                          ResultSet underlying,
+                          QueryDialect queryDialect,
+                          int batchSize,
+                          NextPage nextPage,
+                          int pageSize,
+                          FetchSizeController fetchSizes,
+                          ReadMetrics metrics) {
         this.tableInfo = tableInfo;
         this.underlying = underlying;
+        this.cancelable = underlying;
+        this.nextPage = nextPage;
+        this.pageSize = pageSize;
+        this.fetchSizes = fetchSizes;
+        this.stages = metrics != null ? metrics.newStages() : null;
         try {
             md = underlying.getMetaData();
+            columnCount = md.getColumnCount();
             valueGetters = initValueGetters(queryDialect);
+            incColumnIndex = tableInfo.hasIncColumn() ? underlying.findColumn(tableInfo.getIncColumn()) : -1;
+            timeColumnIndices = new int[tableInfo.hasTimeColumns() ? tableInfo.getTimeColumns().length : 0];
+            for (int i = 0; i < timeColumnIndices.length; i++) {
+                timeColumnIndices[i] = underlying.findColumn(tableInfo.getTimeColumns()[i]);
+            }
+            batch = batchSize > 1 ? new ColumnBatch(columnCount, batchSize) : null;
         } catch (SQLException e) {
             throw new RuntimeException("Error while retrieving table metadata", e);
         }
     }
 
     public boolean next() throws SQLException {
-        if (nextValues == null) {
-            return underlying.next();
+        if (batch != null) {
+            if (hasBatchRows()) {
+                batchRow++;
+                return true;
+            }
+            return false;
+        } else if (nextValues == null) {
+            return advance();
         } else {
             if (onNextValues) {
                 onNextValues = false;
@@ -49,35 +121,149 @@ class ResultSetValuesGetter implements AutoCloseable {
     }
 
     public void previous() throws SQLException {
+        if (batch != null) {
+            // The row stays in the batch, step back so next returns it again
+            batchRow--;
+            return;
+        }
         nextValues = getValues();
         if (tableInfo.hasIncColumn()){
             nextIncValue = extractIncValue();
         }
         if (tableInfo.hasTimeColumns()) {
-            nextTimestampValue = extractTimestamp();
+            nextTimestampValue = extractTimestampNanos();
         }
         onNextValues = false;
     }
 
     public long extractIncValue() throws SQLException {
-        if (onNextValues) {
+        if (batch != null) {
+            return batch.incValue(batchRow);
+        } else if (onNextValues) {
             return nextIncValue;
         } else {
-            return underlying.getLong(tableInfo.getIncColumn());
+            return underlying.getLong(incColumnIndex);
         }
     }
 
-    public Timestamp extractTimestamp() throws SQLException {
-        if (onNextValues) {
+    /**
+     * The first non null time column of the current row in nanoseconds since the epoch
+     */
+    public long extractTimestampNanos() throws SQLException {
+        if (batch != null) {
+            return batch.timestampNanos(batchRow);
+        } else if (onNextValues) {
             return nextTimestampValue;
         } else {
-            for (String timeColumn : tableInfo.getTimeColumns()) {
-                var ts = underlying.getTimestamp(timeColumn);
-                if (ts != null) {
-                    return ts;
+            var timestamp = readTimestampNanos();
+            if (timestamp == ColumnBatch.missingTimestamp) {
+                throw new IllegalStateException("Every row must contain a timestamp");
+            }
+            return timestamp;
+        }
+    }
+
+    private long readTimestampNanos() throws SQLException {
+        var ts = readTimestamp();
+        return ts != null ? InstantMath.toEpochNanos(ts) : ColumnBatch.missingTimestamp;
+    }
+
+    private Timestamp readTimestamp() throws SQLException {
+        for (int timeColumnIndex : timeColumnIndices) {
+            var ts = underlying.getTimestamp(timeColumnIndex);
+            if (ts != null) {
+                return ts;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves to the next row of the result set, querying the next page when a full page was read.
+     */
+    private boolean advance() throws SQLException {
+        while (true) {
+            if (nextRow()) {
+                if (nextPage != null) {
+                    pageRows++;
+                    // Keep the exact values, rounding the time could skip or repeat rows at the page boundary
+                    pageLastIncValue = underlying.getLong(incColumnIndex);
+                    pageLastTime = tableInfo.hasTimeColumns() ? readTimestamp() : null;
                 }
+                return true;
+            }
+            if (nextPage == null || pageRows < pageSize) {
+                return false;
+            }
+            closeUnderlying();
+            pageRows = 0;
+            long start = stages != null ? System.nanoTime() : 0;
+            underlying = nextPage.query(pageLastIncValue, pageLastTime);
+            cancelable = underlying;
+            if (stages != null) {
+                stages.pageQueried(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private boolean nextRow() throws SQLException {
+        if (fetchSizes == null && stages == null) {
+            return underlying.next();
+        }
+        long start = System.nanoTime();
+        boolean hasRow = underlying.next();
+        long elapsed = System.nanoTime() - start;
+        if (stages != null) {
+            stages.fetched(elapsed, hasRow);
+        }
+        if (hasRow && fetchSizes != null && fetchSizes.rowFetched(elapsed)) {
+            try {
+                underlying.setFetchSize(fetchSizes.getFetchSize());
+            } catch (SQLFeatureNotSupportedException e) {
+                // Keep the fetch size the statement was created with
+                fetchSizes = null;
             }
-            throw new IllegalStateException("Every row must contain a timestamp");
+        }
+        return hasRow;
+    }
+
+    /**
+     * Encodes the current row of the result set, measuring a sample of the rows for the fetch size controller.
+     */
+    private void encodeRow(ValueSink sink) throws SQLException, IOException {
+        if (stages == null) {
+            extractRow(sink);
+            return;
+        }
+        long start = System.nanoTime();
+        extractRow(sink);
+        stages.extracted(System.nanoTime() - start);
+    }
+
+    private void extractRow(ValueSink sink) throws SQLException, IOException {
+        if (fetchSizes != null && fetchSizes.sampleRow()) {
+            writeRow(fetchSizes.measure(sink));
+            fetchSizes.sampleDone();
+        } else {
+            writeRow(sink);
+        }
+    }
+
+    /**
+     * Values go straight from the result set to the sink without an intermediate array. There is deliberately no
+     * per table generated encoder: fusing the getters into one method handle measured no gain over this loop.
+     */
+    private void writeRow(ValueSink sink) throws SQLException, IOException {
+        for (int i = 0; i < valueGetters.length; i++) {
+            valueGetters[i].get(underlying, i + 1, sink); // Column indices start at 1 (☉_☉)
+        }
+    }
+
+    private void closeUnderlying() throws SQLException {
+        var statement = underlying.getStatement();
+        underlying.close();
+        if (statement != null) {
+            statement.close();
         }
     }
 
@@ -85,25 +271,132 @@ class ResultSetValuesGetter implements AutoCloseable {
         if (nextValues != null) {
             return nextValues;
         } else {
-            int n = md.getColumnCount();
-            var result = new Object[n];
-            for (int i = 0; i < n; i++) {
-                result[i] = valueGetters.get(i).apply(underlying, i + 1); // Column indices start at 1 (☉_☉)
+            var collector = new ValueCollector(columnCount);
+            try {
+                writeValues(collector);
+            } catch (IOException e) {
+                // Collecting values is done in memory
+                throw new UncheckedIOException(e);
             }
-            return result;
+            return collector.getValues();
+        }
+    }
+
+    /**
+     * Passes the values of the current row to the sink without materializing them when possible.
+     */
+    public void writeValues(ValueSink sink) throws SQLException, IOException {
+        if (batch != null) {
+            batch.writeRow(batchRow, sink);
+        } else if (nextValues != null) {
+            for (Object value : nextValues) {
+                sink.writeObject(value);
+            }
+        } else {
+            encodeRow(sink);
+        }
+    }
+
+    /**
+     * Null when metrics aren't collected
+     */
+    ReadMetrics.Stages getStages() {
+        return stages;
+    }
+
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    boolean isBatched() {
+        return batch != null;
+    }
+
+    /**
+     * Whether there are rows after the current one, fetching the next batch if the current one was fully read.
+     */
+    boolean hasBatchRows() throws SQLException {
+        return batchRow + 1 < batch.size() || fetchBatch();
+    }
+
+    ColumnBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Changes with every fetched batch, so values computed over a batch can be cached
+     */
+    long getBatchNumber() {
+        return batchNumber;
+    }
+
+    int getBatchRow() {
+        return batchRow;
+    }
+
+    void setBatchRow(int row) {
+        batchRow = row;
+    }
+
+    private boolean fetchBatch() throws SQLException {
+        if (exhausted) {
+            return false;
+        }
+        batch.clear();
+        batchRow = -1;
+        batchNumber++;
+        boolean hasIncColumn = tableInfo.hasIncColumn();
+        boolean hasTimeColumns = tableInfo.hasTimeColumns();
+        try {
+            while (batch.size() < batch.capacity()) {
+                if (!advance()) {
+                    // Don't advance the result set past its end when the next reader asks for rows
+                    exhausted = true;
+                    break;
+                }
+                batch.startRow();
+                encodeRow(batch);
+                batch.endRow(hasIncColumn ? underlying.getLong(incColumnIndex) : 0L,
+                        hasTimeColumns ? readTimestampNanos() : 0L);
+            }
+        } catch (IOException e) {
+            // Batches are filled in memory
+            throw new UncheckedIOException(e);
+        }
+        return batch.size() > 0;
+    }
+
+    /**
+     * Cancels the query rows are being fetched from. Can be called from any thread, a fetch blocked in the driver
+     * then fails with an SQLException.
+     */
+    void cancel() throws SQLException {
+        var statement = cancelable.getStatement();
+        if (statement != null) {
+            statement.cancel();
         }
     }
 
     @Override
     public void close() throws Exception {
-        underlying.close();
+        if (nextPage != null) {
+            closeUnderlying();
+        } else {
+            underlying.close();
+        }
+    }
+
+    /**
+     * Queries the page of rows following the given last row, which has the time when the table has time columns.
+     */
+    interface NextPage {
+        ResultSet query(long lastIncValue, Timestamp lastTime) throws SQLException;
     }
 
-    private List<ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> initValueGetters(QueryDialect queryDialect) throws SQLException {
-        int n = md.getColumnCount();
-        List<ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> valueGetters = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            valueGetters.add(queryDialect.getValueGetter(md.getColumnType(i + 1)));
+    private ValueGetter[] initValueGetters(QueryDialect queryDialect) throws SQLException {
+        var valueGetters = new ValueGetter[md.getColumnCount()];
+        for (int i = 0; i < valueGetters.length; i++) {
+            valueGetters[i] = queryDialect.getValueGetter(md, i + 1); // Column indices start at 1 (☉_☉)
         }
         return valueGetters;
     }
@@ -1,12 +1,34 @@
 package com.upsolver.datasources.jdbc;
 
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import com.upsolver.datasources.jdbc.utils.ValueSink;
+
 import java.io.IOException;
-import java.io.OutputStream;
 
-interface RowConverter {
+/**
+ * Encodes rows into a buffer. A row is written by calling {@link #startRow(ByteArrayBuffer)},
+ * then one of the ValueSink methods for every column in order, then {@link #endRow()}.
+ */
+interface RowConverter extends ValueSink {
     Boolean hasHeader();
 
-    void writeHeader(OutputStream os) throws IOException;
+    void writeHeader(ByteArrayBuffer buffer) throws IOException;
+
+    void startRow(ByteArrayBuffer buffer) throws IOException;
+
+    void endRow() throws IOException;
+
+    /**
+     * Called after the last row written into the buffer before it is handed to the reader.
+     */
+    default void endBatch(ByteArrayBuffer buffer) throws IOException {
+    }
 
-    void convertRow(Object[] values, OutputStream os) throws IOException;
+    default void convertRow(Object[] values, ByteArrayBuffer buffer) throws IOException {
+        startRow(buffer);
+        for (Object value : values) {
+            writeObject(value);
+        }
+        endRow();
+    }
 }
@@ -1,23 +1,33 @@
 package com.upsolver.datasources.jdbc;
 
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.InstantMath;
+import com.upsolver.datasources.jdbc.utils.ValueSink;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.time.Instant;
 
 public class RowReader implements AutoCloseable {
-    private final TableInfo tableInfo;
     private final ResultSetValuesGetter valuesGetter;
-    private final JDBCTaskMetadata metadata;
-    private final Timestamp timeLimit;
-    private final Timestamp lowerTimeLimit;
+    private final boolean hasTimeColumns;
+    private final boolean hasIncColumn;
+    // Time limits are kept as epoch nanos to compare rows without allocating
+    private final long timeLimit;
+    private final long lowerTimeLimit;
+    private final long incLimit;
     private final Connection connection;
     private final boolean readAll;
 
     private boolean readValues;
     private long lastIncValue;
-    private Timestamp lastTimestampValue;
+    private long lastTimestampValue;
+    // Where the rows handed to the consumer end, behind the read values while encoded rows wait in buffers
+    private volatile Watermark delivered = Watermark.none;
+    // In batch mode, the rows of the current batch before checkedEnd are known to be within the limits
+    private long checkedBatch = -1;
+    private int checkedEnd;
 
     /**
      * Exposes a similar interface to ResultSet but allows us to limit reading.
@@ -28,66 +38,163 @@ public class RowReader implements AutoCloseable {
                      JDBCTaskMetadata metadata,
                      Connection connection,
                      boolean readAll) {
-        this.tableInfo = tableInfo;
         this.valuesGetter = valuesGetter;
-        this.metadata = metadata;
-        this.timeLimit = Timestamp.from(metadata.getEndTime());
-        this.lowerTimeLimit = Timestamp.from(metadata.getStartTime());
+        this.hasTimeColumns = tableInfo.hasTimeColumns();
+        this.hasIncColumn = tableInfo.hasIncColumn();
+        this.timeLimit = InstantMath.toEpochNanosLimit(metadata.getEndTime());
+        this.lowerTimeLimit = InstantMath.toEpochNanos(metadata.getStartTime());
+        this.incLimit = metadata.getExclusiveEnd();
         this.connection = connection;
         this.readAll = readAll;
     }
 
     public boolean next() throws SQLException {
-        var result = valuesGetter.next();
-        if (result && !readAll) {
-            var newTimestamp = tableInfo.hasTimeColumns() ? valuesGetter.extractTimestamp() : null;
-            var newIncValue = tableInfo.hasIncColumn() ? valuesGetter.extractIncValue() : 0L;
+        if (valuesGetter.isBatched() && !readAll) {
+            return nextInBatch();
+        }
+        while (valuesGetter.next()) {
+            if (readAll) {
+                return true;
+            }
+            var newTimestamp = hasTimeColumns ? valuesGetter.extractTimestampNanos() : 0L;
+            var newIncValue = hasIncColumn ? valuesGetter.extractIncValue() : 0L;
             if (exceedsLimits(newTimestamp, newIncValue)) {
                 valuesGetter.previous();
-                result = false;
+                return false;
+            }
+            readValues = true;
+            lastTimestampValue = newTimestamp;
+            lastIncValue = newIncValue;
+            // Rows preceding the window only advance the last read values, keep going until a row inside the window
+            if (!precedesLimits(newTimestamp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as next, but checks the limits over the rest of the batch at once instead of row by row.
+     * Rows preceding the window are skipped together and a row exceeding the limits is left in the batch for the
+     * next reader sharing the values getter.
+     */
+    private boolean nextInBatch() throws SQLException {
+        while (valuesGetter.hasBatchRows()) {
+            var batch = valuesGetter.getBatch();
+            int from = valuesGetter.getBatchRow() + 1;
+            if (checkedBatch != valuesGetter.getBatchNumber()) {
+                checkedBatch = valuesGetter.getBatchNumber();
+                checkedEnd = batch.size();
+                if (hasIncColumn) {
+                    checkedEnd = batch.firstIncAtLeast(from, checkedEnd, incLimit);
+                }
+                if (hasTimeColumns) {
+                    checkedEnd = batch.firstTimestampAtLeast(from, checkedEnd, timeLimit);
+                }
             }
-            if (result) {
-                readValues = true;
-                lastTimestampValue = newTimestamp;
-                lastIncValue = newIncValue;
+            if (from == checkedEnd) {
+                return false;
             }
-            if (precedesLimits(newTimestamp)) {
-                // Do this after saving the updated timestamp values
-                return next();
+            int row = hasTimeColumns ? batch.firstTimestampAtLeast(from, checkedEnd, lowerTimeLimit) : from;
+            // When every remaining checked row precedes the window they are all consumed
+            int last = Math.min(row, checkedEnd - 1);
+            valuesGetter.setBatchRow(last);
+            readValues = true;
+            lastTimestampValue = hasTimeColumns ? batch.timestampNanos(last) : 0L;
+            lastIncValue = hasIncColumn ? batch.incValue(last) : 0L;
+            if (row < checkedEnd) {
+                return true;
             }
         }
-        return result;
+        return false;
     }
 
     public Object[] getValues() throws SQLException {
         return valuesGetter.getValues();
     }
 
-    private boolean precedesLimits(Timestamp newTimestamp) {
-        return (tableInfo.hasTimeColumns() && newTimestamp.compareTo(lowerTimeLimit) < 0);
+    public void writeValues(ValueSink sink) throws SQLException, IOException {
+        valuesGetter.writeValues(sink);
+    }
+
+    int getColumnCount() {
+        return valuesGetter.getColumnCount();
+    }
+
+    ReadMetrics.Stages getStages() {
+        return valuesGetter.getStages();
+    }
+
+    private boolean precedesLimits(long newTimestamp) {
+        return hasTimeColumns && newTimestamp < lowerTimeLimit;
     }
 
-    private boolean exceedsLimits(Timestamp newTimestamp, long newIncValue) {
-        return (tableInfo.hasTimeColumns() && newTimestamp.compareTo(timeLimit) >= 0) ||
-                (tableInfo.hasIncColumn() && newIncValue >= metadata.getExclusiveEnd());
+    private boolean exceedsLimits(long newTimestamp, long newIncValue) {
+        return (hasTimeColumns && newTimestamp >= timeLimit) ||
+                (hasIncColumn && newIncValue >= incLimit);
     }
 
     public long getLastIncValue() {
         return lastIncValue;
     }
 
-    public Timestamp getLastTimestampValue() {
-        return lastTimestampValue;
+    public Instant getLastTimestampValue() {
+        return InstantMath.fromEpochNanos(lastTimestampValue);
     }
 
     public boolean readValues() {
         return readValues;
     }
 
+    /**
+     * The last values read so far, to be marked as delivered once the rows read up to here reached the consumer
+     */
+    Watermark readWatermark() {
+        return readValues ? new Watermark(lastIncValue, lastTimestampValue) : Watermark.none;
+    }
+
+    void delivered(Watermark watermark) {
+        delivered = watermark;
+    }
+
+    Watermark getDelivered() {
+        return delivered;
+    }
+
+    static final class Watermark {
+        static final Watermark none = new Watermark(0L, 0L);
+
+        private final long incValue;
+        private final long timestampNanos;
+
+        private Watermark(long incValue, long timestampNanos) {
+            this.incValue = incValue;
+            this.timestampNanos = timestampNanos;
+        }
+
+        boolean readValues() {
+            return this != none;
+        }
+
+        long getIncValue() {
+            return incValue;
+        }
+
+        Instant getTimestamp() {
+            return InstantMath.fromEpochNanos(timestampNanos);
+        }
+    }
+
+    /**
+     * Cancels the query of the values getter, can be called from another thread while it fetches rows
+     */
+    void cancel() throws SQLException {
+        valuesGetter.cancel();
+    }
+
     @Override
     public void close() throws Exception {
         valuesGetter.close();
         connection.close();
     }
 }
-
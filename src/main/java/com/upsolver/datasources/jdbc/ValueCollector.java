@@ -0,0 +1,49 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.utils.ValueSink;
+
+/**
+ * Collects the values of a row into an array, boxing primitive values.
+ */
+class ValueCollector implements ValueSink {
+    private final Object[] values;
+    private int column = 0;
+
+    ValueCollector(int columnCount) {
+        values = new Object[columnCount];
+    }
+
+    Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public void writeNull() {
+        values[column++] = null;
+    }
+
+    @Override
+    public void writeLong(long value) {
+        values[column++] = value;
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        values[column++] = value;
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        values[column++] = value;
+    }
+
+    @Override
+    public void writeString(String value) {
+        values[column++] = value;
+    }
+
+    @Override
+    public void writeObject(Object value) {
+        values[column++] = value;
+    }
+}
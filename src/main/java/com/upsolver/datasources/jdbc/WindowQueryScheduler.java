@@ -0,0 +1,109 @@
+package com.upsolver.datasources.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the queries of consecutive task windows, or of the key ranges of a full load, concurrently.
+ * Requesting the reader of a window also starts the queries of the following windows, up to the configured parallelism,
+ * so that at most that many windows hold a connection while they wait to be consumed.
+ */
+class WindowQueryScheduler implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WindowQueryScheduler.class);
+
+    private final List<Callable<RowReader>> queries;
+    private final List<CompletableFuture<RowReader>> readers;
+    // Readers handed out are closed by whoever requested them
+    private final boolean[] handedOut;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private boolean closed = false;
+
+    WindowQueryScheduler(List<Callable<RowReader>> queries, int parallelism, ExecutorService executor) {
+        this.queries = queries;
+        this.readers = new ArrayList<>(queries.size());
+        this.handedOut = new boolean[queries.size()];
+        this.parallelism = parallelism;
+        this.executor = executor;
+        for (int i = 0; i < queries.size(); i++) {
+            readers.add(null);
+        }
+    }
+
+    Callable<RowReader> readerFor(int window) {
+        return () -> {
+            try {
+                return start(window).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        };
+    }
+
+    synchronized void startAhead(int window) {
+        int end = Math.min(window + parallelism, queries.size());
+        for (int i = window; i < end && !closed; i++) {
+            if (readers.get(i) == null) {
+                var query = queries.get(i);
+                readers.set(i, CompletableFuture.supplyAsync(() -> {
+                    if (isClosed()) {
+                        // Don't take a connection for a query nobody will read
+                        throw new CompletionException(new IllegalStateException("Window queries were closed"));
+                    }
+                    try {
+                        return query.call();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+        }
+    }
+
+    private CompletableFuture<RowReader> start(int window) {
+        startAhead(window);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Window queries were closed");
+            }
+            handedOut[window] = true;
+            return readers.get(window);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the readers of queries that were started but never requested, once their query completes, returning
+     * their connections to the pool. Queries that weren't started yet are skipped.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < readers.size(); i++) {
+            var reader = readers.get(i);
+            if (reader != null && !handedOut[i]) {
+                reader.thenAccept(rowReader -> {
+                    try {
+                        rowReader.close();
+                    } catch (Exception e) {
+                        logger.warn("Failed to close unread window query", e);
+                    }
+                });
+            }
+        }
+    }
+}
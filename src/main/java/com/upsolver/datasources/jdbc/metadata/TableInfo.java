@@ -10,6 +10,13 @@ public class TableInfo {
     private String incColumn;
     private ColumnInfo[] columns;
     private String[] timeColumns;
+    private String[] primaryKeyColumns = new String[0];
+    // Whether only some of the columns are read, which queries then select by name
+    private boolean projected = false;
+    // A condition every read row must match, null to read all rows
+    private String rowFilter;
+    // The string the database quotes identifiers with, blank if it doesn't support quoting
+    private String identifierQuote = "\"";
 
     public TableInfo(String catalog, String schema, String name,
                      ColumnInfo[] columns) {
@@ -27,7 +34,10 @@ public class TableInfo {
                 ", name='" + name + '\'' +
                 ", incColumn='" + incColumn + '\'' +
                 ", columns=" + Arrays.toString(columns) +
+                ", projected=" + projected +
+                ", rowFilter='" + rowFilter + '\'' +
                 ", timeColumns=" + Arrays.toString(timeColumns) +
+                ", primaryKeyColumns=" + Arrays.toString(primaryKeyColumns) +
                 '}';
     }
 
@@ -65,6 +75,38 @@ public class TableInfo {
 
     public ColumnInfo[] getColumns() { return columns; }
 
+    /**
+     * Narrows the columns that are read, in table order, to the given ones
+     */
+    public void setSelectedColumns(ColumnInfo[] columns) {
+        this.columns = columns;
+        this.projected = true;
+    }
+
+    public boolean isProjected() {
+        return projected;
+    }
+
+    public String getRowFilter() {
+        return rowFilter;
+    }
+
+    public void setRowFilter(String rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    public boolean hasRowFilter() {
+        return rowFilter != null;
+    }
+
+    public String getIdentifierQuote() {
+        return identifierQuote;
+    }
+
+    public void setIdentifierQuote(String identifierQuote) {
+        this.identifierQuote = identifierQuote;
+    }
+
     public ColumnInfo getColumn(String name) {
         return Arrays.stream(columns).filter(x -> x.getName().equalsIgnoreCase(name)).findFirst().orElse(null);
     }
@@ -80,5 +122,17 @@ public class TableInfo {
     public void setTimeColumns(String[] timeColumns) {
         this.timeColumns = timeColumns;
     }
+
+    public String[] getPrimaryKeyColumns() {
+        return primaryKeyColumns;
+    }
+
+    public void setPrimaryKeyColumns(String[] primaryKeyColumns) {
+        this.primaryKeyColumns = primaryKeyColumns;
+    }
+
+    public boolean hasPrimaryKey() {
+        return primaryKeyColumns.length > 0;
+    }
 }
 
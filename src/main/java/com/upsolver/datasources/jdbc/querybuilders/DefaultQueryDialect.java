@@ -3,15 +3,27 @@ package com.upsolver.datasources.jdbc.querybuilders;
 import com.upsolver.datasources.jdbc.JDBCTaskMetadata;
 import com.upsolver.datasources.jdbc.metadata.SimpleSqlType;
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.BoundQuery;
+import com.upsolver.datasources.jdbc.utils.ChunkChecksums;
 import com.upsolver.datasources.jdbc.utils.NamedPreparedStatment;
-import com.upsolver.datasources.jdbc.utils.ThrowingBiFunction;
+import com.upsolver.datasources.jdbc.utils.NamedQuery;
+import com.upsolver.datasources.jdbc.utils.SlowQueryLog;
+import com.upsolver.datasources.jdbc.utils.ValueGetter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class DefaultQueryDialect implements QueryDialect {
     private static final Logger logger = LoggerFactory.getLogger(DefaultQueryDialect.class);
@@ -23,40 +35,99 @@ public class DefaultQueryDialect implements QueryDialect {
             JDBCType.TIMESTAMP_WITH_TIMEZONE
     ));
 
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getObject = ResultSet::getObject;
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getString = ResultSet::getString;
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getDate = (rs, i) -> {
-        var ts = rs.getDate(i);
-        return ts != null ? ts.getTime() : null;
+    protected static final ValueGetter getObject = (rs, i, sink) -> sink.writeObject(rs.getObject(i));
+    protected static final ValueGetter getString = (rs, i, sink) -> sink.writeString(rs.getString(i));
+    // Temporal values are read as java.time types and written as epoch millis, local values in the JVM's time zone
+    // like java.sql.Date, Time and Timestamp do
+    protected static final ValueGetter getDate = (rs, i, sink) -> {
+        var date = rs.getObject(i, LocalDate.class);
+        if (date != null) {
+            sink.writeLong(date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        } else {
+            sink.writeNull();
+        }
+    };
+    protected static final ValueGetter getTime = (rs, i, sink) -> {
+        var time = rs.getObject(i, LocalTime.class);
+        if (time != null) {
+            sink.writeLong(time.atDate(LocalDate.EPOCH).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        } else {
+            sink.writeNull();
+        }
+    };
+    protected static final ValueGetter getOffsetTime = (rs, i, sink) -> {
+        var time = rs.getObject(i, OffsetTime.class);
+        if (time != null) {
+            sink.writeLong(time.atDate(LocalDate.EPOCH).toInstant().toEpochMilli());
+        } else {
+            sink.writeNull();
+        }
+    };
+    protected static final ValueGetter getTimestamp = (rs, i, sink) -> {
+        var timestamp = rs.getObject(i, LocalDateTime.class);
+        if (timestamp != null) {
+            sink.writeLong(timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        } else {
+            sink.writeNull();
+        }
+    };
+    protected static final ValueGetter getOffsetTimestamp = (rs, i, sink) -> {
+        var timestamp = rs.getObject(i, OffsetDateTime.class);
+        if (timestamp != null) {
+            sink.writeLong(timestamp.toInstant().toEpochMilli());
+        } else {
+            sink.writeNull();
+        }
+    };
+    protected static final ValueGetter getLong = (rs, i, sink) -> {
+        var value = rs.getLong(i);
+        if (rs.wasNull()) {
+            sink.writeNull();
+        } else {
+            sink.writeLong(value);
+        }
     };
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getTime = (rs, i) -> {
-        var ts = rs.getTime(i);
-        return ts != null ? ts.getTime() : null;
+    protected static final ValueGetter getDouble = (rs, i, sink) -> {
+        var value = rs.getDouble(i);
+        if (rs.wasNull()) {
+            sink.writeNull();
+        } else {
+            sink.writeDouble(value);
+        }
     };
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getTimestamp = (rs, i) -> {
-        var ts = rs.getTimestamp(i);
-        return ts != null ? ts.getTime() : null;
+    protected static final ValueGetter getBoolean = (rs, i, sink) -> {
+        var value = rs.getBoolean(i);
+        if (rs.wasNull()) {
+            sink.writeNull();
+        } else {
+            sink.writeBoolean(value);
+        }
     };
 
-    protected static final Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> dateTimeGetters = new HashMap<>();
+    protected static final Map<Integer, ValueGetter> dateTimeGetters = new HashMap<>();
 
     static {
         dateTimeGetters.put(Types.DATE, getDate);
         dateTimeGetters.put(Types.TIME, getTime);
         dateTimeGetters.put(Types.TIMESTAMP, getTimestamp);
-        dateTimeGetters.put(Types.TIME_WITH_TIMEZONE, getTime);
-        dateTimeGetters.put(Types.TIMESTAMP_WITH_TIMEZONE, getTimestamp);
+        dateTimeGetters.put(Types.TIME_WITH_TIMEZONE, getOffsetTime);
+        dateTimeGetters.put(Types.TIMESTAMP_WITH_TIMEZONE, getOffsetTimestamp);
     }
 
-    protected final Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> valueGetters;
-    private final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> defaultValueGetter;
+    protected final Map<Integer, ValueGetter> valueGetters;
+    private final ValueGetter defaultValueGetter;
+    private final boolean keepType;
+    // Only checks whether a dialect implements a hash hook, the expression built for it is never run
+    private static final String hookProbe = "probe";
+    // Parsed queries by kind, table and shape, every task of a table runs the same few queries with new values
+    private final Map<String, NamedQuery> templates = new ConcurrentHashMap<>();
 
-    public DefaultQueryDialect(boolean keepType, Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> additionalGetters) {
-        this(getAllGetters(keepType, additionalGetters), keepType ? getObject : getString);
+    public DefaultQueryDialect(boolean keepType, Map<Integer, ValueGetter> additionalGetters) {
+        this(keepType, getAllGetters(keepType, additionalGetters), keepType ? getObject : getString);
     }
 
-    private static Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> getAllGetters(boolean keepType, Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> additionalGetters) {
-        Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> allGetters = new java.util.HashMap();
+    private static Map<Integer, ValueGetter> getAllGetters(boolean keepType, Map<Integer, ValueGetter> additionalGetters) {
+        Map<Integer, ValueGetter> allGetters = new java.util.HashMap();
         if (keepType) {
             allGetters.putAll(dateTimeGetters);
         }
@@ -64,7 +135,8 @@ public class DefaultQueryDialect implements QueryDialect {
         return allGetters;
     }
 
-    protected DefaultQueryDialect(Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> valueGetters, ThrowingBiFunction<ResultSet, Integer, Object, SQLException> defaultValueGetter) {
+    protected DefaultQueryDialect(boolean keepType, Map<Integer, ValueGetter> valueGetters, ValueGetter defaultValueGetter) {
+        this.keepType = keepType;
         this.valueGetters = valueGetters;
         this.defaultValueGetter = defaultValueGetter;
     }
@@ -76,90 +148,170 @@ public class DefaultQueryDialect implements QueryDialect {
         return rs.getTime(1).getTime() / 1000;
     }
 
+    /**
+     * The earliest time is probed separately for every time column, ordered by that column and limited to one row,
+     * so an index on the column can answer without scanning the table.
+     */
     @Override
-    public Instant getStartTime(TableInfo tableInfo, Connection connection) throws SQLException {
-        String coalescedTimes = coalesceTimeColumns(tableInfo);
-        String query = "SELECT MIN(" + coalescedTimes + ") AS min_time" +
-                " FROM " + fullTableName(tableInfo);
-        var rs = connection.prepareStatement(query).executeQuery();
-        if (rs.next()) {
-            var ts = rs.getTimestamp("min_time");
-            return ts != null ? ts.toInstant().truncatedTo(ChronoUnit.MINUTES) : null;
-        } else {
-            return null;
+    public Instant getStartTime(TableInfo tableInfo, Connection connection, SlowQueryLog slowQueryLog) throws SQLException {
+        Timestamp minTime = null;
+        var timeColumns = tableInfo.getTimeColumns();
+        for (int i = 0; i < timeColumns.length; i++) {
+            String column = timeColumns[i];
+            int index = i;
+            var query = template(tableInfo, "startTime:" + i, () ->
+                    limitOrdered("SELECT " + topLimit(1) + " " + column + " AS min_time" +
+                            " FROM " + fullTableName(tableInfo) +
+                            " WHERE " + earlierTimesAreNull(tableInfo, index) + column + " IS NOT NULL" +
+                            " ORDER BY " + column + " ASC", 1));
+            try (var statement = prepare(connection, query, slowQueryLog); var rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    var ts = rs.getTimestamp("min_time");
+                    if (ts != null && (minTime == null || ts.before(minTime))) {
+                        minTime = ts;
+                    }
+                }
+            }
         }
+        return minTime != null ? minTime.toInstant().truncatedTo(ChronoUnit.MINUTES) : null;
     }
 
+    /**
+     * The smallest and largest new values are each read with a single row probe ordered by the incrementing column.
+     */
     @Override
-    public NamedPreparedStatment taskInfoByInc(TableInfo tableInfo,
-                                               JDBCTaskMetadata metadata,
-                                               Connection connection) throws SQLException {
+    public Optional<TaskBounds> taskInfoByInc(TableInfo tableInfo,
+                                              JDBCTaskMetadata metadata,
+                                              Connection connection,
+                                              SlowQueryLog slowQueryLog) throws SQLException {
+        var min = probeLong(incProbe(tableInfo, metadata, "ASC"), metadata, connection, slowQueryLog);
+        if (min.isEmpty()) {
+            return Optional.empty();
+        }
+        var max = probeLong(incProbe(tableInfo, metadata, "DESC"), metadata, connection, slowQueryLog);
+        return Optional.of(new TaskBounds(min.get(), max.orElse(min.get()), null));
+    }
+
+    private NamedQuery incProbe(TableInfo tableInfo, JDBCTaskMetadata metadata, String direction) {
         String incColumn = tableInfo.getIncColumn();
-        String query = "SELECT MIN(" + incColumn + ") AS MIN," +
-                " MAX(" + incColumn + ") AS MAX" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + incColumn + " >= :startFrom" +
-                " HAVING MIN( " + incColumn + ") IS NOT NULL";
-        var statement = new NamedPreparedStatment(connection, query);
-        statement.setLong("startFrom", metadata.getExclusiveEnd());
-        return statement;
+        return template(tableInfo, "incProbe:" + direction + shardKey(metadata), () ->
+                limitOrdered("SELECT " + topLimit(1) + " " + incColumn + " AS inc" +
+                        " FROM " + fullTableName(tableInfo) +
+                        " WHERE " + incColumn + " >= :startFrom" +
+                        shardCondition(tableInfo, metadata) +
+                        " ORDER BY " + incColumn + " " + direction, 1));
+    }
+
+    private Optional<Long> probeLong(NamedQuery query, JDBCTaskMetadata metadata, Connection connection,
+                                     SlowQueryLog slowQueryLog) throws SQLException {
+        try (var statement = prepare(connection, query, slowQueryLog)) {
+            statement.setLong("startFrom", metadata.getExclusiveEnd());
+            try (var rs = statement.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getLong("inc")) : Optional.empty();
+            }
+        }
     }
 
+    /**
+     * The latest time is probed per time column instead of over their coalesced value, which no index can serve.
+     */
     @Override
-    public NamedPreparedStatment taskInfoByTime(TableInfo tableInfo,
-                                                JDBCTaskMetadata metadata,
-                                                Instant maxTime,
-                                                Connection connection) throws SQLException {
-        String coalescedTimes = coalesceTimeColumns(tableInfo);
-        String query = "SELECT MAX(" + coalescedTimes + ") AS last_time" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + coalescedTimes + " < :maxTime" +
-                " AND " + coalescedTimes + " > :startTime" +
-                " HAVING MAX( " + coalescedTimes + ") IS NOT NULL";
-        var statement = new NamedPreparedStatment(connection, query);
-        statement.setTime("startTime", metadata.getEndTime());
-        statement.setTime("maxTime", maxTime);
-        return statement;
+    public Optional<TaskBounds> taskInfoByTime(TableInfo tableInfo,
+                                               JDBCTaskMetadata metadata,
+                                               Instant maxTime,
+                                               Connection connection,
+                                               SlowQueryLog slowQueryLog) throws SQLException {
+        TaskBounds bounds = null;
+        var timeColumns = tableInfo.getTimeColumns();
+        for (int i = 0; i < timeColumns.length; i++) {
+            String column = timeColumns[i];
+            int index = i;
+            var query = template(tableInfo, "lastTime:" + i + shardKey(metadata), () ->
+                    limitOrdered("SELECT " + topLimit(1) + " " + column + " AS last_time" +
+                            " FROM " + fullTableName(tableInfo) +
+                            " WHERE " + earlierTimesAreNull(tableInfo, index) + column + " < :maxTime" +
+                            " AND " + column + " > :startTime" +
+                            shardCondition(tableInfo, metadata) +
+                            " ORDER BY " + column + " DESC", 1));
+            try (var statement = prepare(connection, query, slowQueryLog)) {
+                statement.setTime("startTime", metadata.getEndTime());
+                statement.setTime("maxTime", maxTime);
+                try (var rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        var lastTime = new TaskBounds(0, 0, rs.getTimestamp("last_time").toInstant());
+                        bounds = lastTime.merge(bounds);
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(bounds);
     }
 
+    /**
+     * Aggregates the new rows of every time column separately, so each range is read through the column's index and
+     * the cost follows the number of new rows rather than the size of the table.
+     */
     @Override
-    public NamedPreparedStatment taskInfoByIncAndTime(TableInfo tableInfo,
-                                                      JDBCTaskMetadata metadata,
-                                                      Instant maxTime,
-                                                      Connection connection) throws SQLException {
-        String coalescedTimes = coalesceTimeColumns(tableInfo);
+    public Optional<TaskBounds> taskInfoByIncAndTime(TableInfo tableInfo,
+                                                     JDBCTaskMetadata metadata,
+                                                     Instant maxTime,
+                                                     Connection connection,
+                                                     SlowQueryLog slowQueryLog) throws SQLException {
+        TaskBounds bounds = null;
         String incColumn = tableInfo.getIncColumn();
-        String query = "SELECT MIN(" + incColumn + ") AS MIN," +
-                " MAX(" + incColumn + ") AS MAX," +
-                " MAX(" + coalescedTimes + ") AS last_time" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + coalescedTimes + " < :maxTime" +
-                " AND ((" + coalescedTimes + " = :startTime AND " + incColumn + " >= :startFrom)" +
-                " OR (" + coalescedTimes + " > :startTime))" +
-                " HAVING MIN( " + incColumn + ") IS NOT NULL";
-        var statement = new NamedPreparedStatment(connection, query);
-        statement.setLong("startFrom", metadata.getExclusiveEnd());
-        statement.setTime("startTime", metadata.getEndTime());
-        statement.setTime("maxTime", maxTime);
-        return statement;
+        var timeColumns = tableInfo.getTimeColumns();
+        for (int i = 0; i < timeColumns.length; i++) {
+            String column = timeColumns[i];
+            int index = i;
+            var query = template(tableInfo, "incAndTimeBounds:" + i + shardKey(metadata), () ->
+                    "SELECT MIN(" + incColumn + ") AS MIN," +
+                            " MAX(" + incColumn + ") AS MAX," +
+                            " MAX(" + column + ") AS last_time" +
+                            " FROM " + fullTableName(tableInfo) +
+                            " WHERE " + earlierTimesAreNull(tableInfo, index) + column + " < :maxTime" +
+                            " AND ((" + column + " = :startTime AND " + incColumn + " >= :startFrom)" +
+                            " OR (" + column + " > :startTime))" +
+                            shardCondition(tableInfo, metadata) +
+                            " HAVING MIN( " + incColumn + ") IS NOT NULL");
+            try (var statement = prepare(connection, query, slowQueryLog)) {
+                statement.setLong("startFrom", metadata.getExclusiveEnd());
+                statement.setTime("startTime", metadata.getEndTime());
+                statement.setTime("maxTime", maxTime);
+                try (var rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        var columnBounds = new TaskBounds(rs.getLong("MIN"), rs.getLong("MAX"), rs.getTimestamp("last_time").toInstant());
+                        bounds = columnBounds.merge(bounds);
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(bounds);
     }
 
     @Override
     public NamedPreparedStatment queryByIncAndTime(TableInfo tableInfo,
                                                    JDBCTaskMetadata metadata,
                                                    int limit,
-                                                   Connection connection) throws SQLException {
-        String coalesce = coalesceTimeColumns(tableInfo);
-        String incColumn = tableInfo.getIncColumn();
-        String query = "SELECT " + topLimit(limit) + " *" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + coalesce + " < :endTime" +
-                " AND ((" + coalesce + " = :startTime AND " + incColumn + " >= :incStart)" +
-                " OR (" + coalesce + " > :startTime))" +
-                rownumCondition(limit, true, false) +
-                " ORDER BY " + coalesce + ", " + incColumn + " ASC" +
-                " " + endLimit(limit);
-        var statement = new NamedPreparedStatment(connection, query);
+                                                   boolean includeStartTime,
+                                                   Connection connection,
+                                                   SlowQueryLog slowQueryLog) throws SQLException {
+        var key = "byIncAndTime:" + limit + (includeStartTime ? ":inclusive" : "") + shardKey(metadata);
+        var query = template(tableInfo, key, () -> {
+            String coalesce = coalesceTimeColumns(tableInfo);
+            String incColumn = tableInfo.getIncColumn();
+            String startCondition = includeStartTime ?
+                    coalesce + " >= :startTime" :
+                    "((" + coalesce + " = :startTime AND " + incColumn + " >= :incStart)" +
+                            " OR (" + coalesce + " > :startTime))";
+            return limitOrdered("SELECT " + topLimit(limit) + " " + selectList(tableInfo) +
+                    " FROM " + fullTableName(tableInfo) +
+                    " WHERE " + coalesce + " < :endTime" +
+                    " AND " + startCondition +
+                    rowFilterCondition(tableInfo) +
+                    shardCondition(tableInfo, metadata) +
+                    " ORDER BY " + coalesce + ", " + incColumn + " ASC", limit);
+        });
+        var statement = prepare(connection, query, slowQueryLog);
         statement.setLong("incStart", metadata.getInclusiveStart());
         statement.setTime("startTime", metadata.getStartTime());
         statement.setTime("endTime", metadata.getEndTime());
@@ -171,15 +323,20 @@ public class DefaultQueryDialect implements QueryDialect {
     public NamedPreparedStatment queryByTime(TableInfo tableInfo,
                                              JDBCTaskMetadata metadata,
                                              int limit,
-                                             Connection connection) throws SQLException {
-        String coalesce = coalesceTimeColumns(tableInfo);
-        String query = "SELECT " + topLimit(limit) + " *" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + coalesce + " > :startTime AND " + coalesce + " <= :endTime" +
-                rownumCondition(limit, true, false) +
-                " ORDER BY " + coalesce + " ASC" +
-                " " + endLimit(limit);
-        var statement = new NamedPreparedStatment(connection, query);
+                                             boolean includeStartTime,
+                                             Connection connection,
+                                             SlowQueryLog slowQueryLog) throws SQLException {
+        var key = "byTime:" + limit + (includeStartTime ? ":inclusive" : "") + shardKey(metadata);
+        var query = template(tableInfo, key, () -> {
+            String coalesce = coalesceTimeColumns(tableInfo);
+            return limitOrdered("SELECT " + topLimit(limit) + " " + selectList(tableInfo) +
+                    " FROM " + fullTableName(tableInfo) +
+                    " WHERE " + coalesce + (includeStartTime ? " >= " : " > ") + ":startTime AND " + coalesce + " <= :endTime" +
+                    rowFilterCondition(tableInfo) +
+                    shardCondition(tableInfo, metadata) +
+                    " ORDER BY " + coalesce + " ASC", limit);
+        });
+        var statement = prepare(connection, query, slowQueryLog);
         statement.setTime("startTime", metadata.getStartTime());
         statement.setTime("endTime", metadata.getEndTime());
         return statement;
@@ -190,14 +347,19 @@ public class DefaultQueryDialect implements QueryDialect {
     public NamedPreparedStatment queryByInc(TableInfo tableInfo,
                                             JDBCTaskMetadata metadata,
                                             int limit,
-                                            Connection connection) throws SQLException {
-        String incColumn = tableInfo.getIncColumn();
-        String query = "SELECT " + topLimit(limit) + " *" +
-                " FROM " + fullTableName(tableInfo) +
-                " WHERE " + incColumn + " BETWEEN :incStart AND :incEnd" +
-                rownumCondition(limit, true, false) +
-                " " + endLimit(limit);
-        var statement = new NamedPreparedStatment(connection, query);
+                                            Connection connection,
+                                            SlowQueryLog slowQueryLog) throws SQLException {
+        var query = template(tableInfo, "byInc:" + limit + shardKey(metadata), () -> {
+            String incColumn = tableInfo.getIncColumn();
+            return limitOrdered("SELECT " + topLimit(limit) + " " + selectList(tableInfo) +
+                    " FROM " + fullTableName(tableInfo) +
+                    " WHERE " + incColumn + " BETWEEN :incStart AND :incEnd" +
+                    rowFilterCondition(tableInfo) +
+                    shardCondition(tableInfo, metadata) +
+                    // Only limited reads need an order, pages continue from the last value of the previous one
+                    (limit >= 0 ? " ORDER BY " + incColumn + " ASC" : ""), limit);
+        });
+        var statement = prepare(connection, query, slowQueryLog);
         statement.setLong("incStart", metadata.getInclusiveStart());
         statement.setLong("incEnd", metadata.getExclusiveEnd() - 1);
         return statement;
@@ -207,12 +369,112 @@ public class DefaultQueryDialect implements QueryDialect {
     public NamedPreparedStatment queryFullTable(TableInfo tableInfo,
                                                 JDBCTaskMetadata metadata,
                                                 int limit,
-                                                Connection connection) throws SQLException {
-        String query = "SELECT " + topLimit(limit) + " *" +
+                                                Connection connection,
+                                                SlowQueryLog slowQueryLog) throws SQLException {
+        var query = template(tableInfo, "fullTable:" + limit + shardKey(metadata), () -> {
+            // ROWNUM is assigned to the rows matching the other conditions, so it can follow them in the same WHERE
+            String conditions = rowFilterCondition(tableInfo) + shardCondition(tableInfo, metadata);
+            return "SELECT " + topLimit(limit) + " " + selectList(tableInfo) +
+                    " FROM " + fullTableName(tableInfo) +
+                    (conditions.isEmpty() ? "" : " WHERE 1 = 1" + conditions) +
+                    rownumCondition(limit, !conditions.isEmpty(), conditions.isEmpty()) +
+                    " " + endLimit(limit);
+        });
+        return prepare(connection, query, slowQueryLog);
+    }
+
+    /**
+     * A single aggregation over the table, grouped by chunk. Chunks without rows are missing from the results and
+     * keep a checksum of 0.
+     */
+    @Override
+    public int[] chunkChecksums(TableInfo tableInfo,
+                                JDBCTaskMetadata metadata,
+                                int chunks,
+                                Connection connection,
+                                SlowQueryLog slowQueryLog) throws SQLException {
+        var query = template(tableInfo, "chunkChecksums:" + chunks + shardKey(metadata), () -> {
+            String chunk = chunkOf(tableInfo, metadata, chunks);
+            return "SELECT " + chunk + " AS chunk," +
+                    " COUNT(*) AS row_count," +
+                    " " + checksumAggregate(quotedColumns(tableInfo)) + " AS checksum" +
+                    " FROM " + fullTableName(tableInfo) +
+                    " WHERE 1 = 1" +
+                    rowFilterCondition(tableInfo) +
+                    shardCondition(tableInfo, metadata) +
+                    " GROUP BY " + chunk;
+        });
+        var result = new int[chunks];
+        try (var statement = prepare(connection, query, slowQueryLog);
+             var rs = statement.executeQuery()) {
+            while (rs.next()) {
+                result[rs.getInt("chunk")] = ChunkChecksums.checksum(rs.getLong("row_count"), rs.getLong("checksum"));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NamedPreparedStatment queryChunks(TableInfo tableInfo,
+                                             JDBCTaskMetadata metadata,
+                                             int chunks,
+                                             int[] selectedChunks,
+                                             Connection connection,
+                                             SlowQueryLog slowQueryLog) throws SQLException {
+        // The chunks change between loads, so the query isn't kept as a template
+        var chunkList = new StringJoiner(", ");
+        for (int chunk : selectedChunks) {
+            chunkList.add(String.valueOf(chunk));
+        }
+        String chunkCondition = selectedChunks.length > 0 ? chunkOf(tableInfo, metadata, chunks) + " IN (" + chunkList + ")" : "1 = 0";
+        var query = NamedQuery.parse("SELECT " + selectList(tableInfo) +
                 " FROM " + fullTableName(tableInfo) +
-                rownumCondition(limit, false, true) +
-                " " + endLimit(limit);
-        return new NamedPreparedStatment(connection, query);
+                " WHERE " + chunkCondition +
+                rowFilterCondition(tableInfo) +
+                shardCondition(tableInfo, metadata));
+        return prepare(connection, query, slowQueryLog);
+    }
+
+    @Override
+    public Optional<TaskBounds> keyBounds(TableInfo tableInfo,
+                                          JDBCTaskMetadata metadata,
+                                          String keyColumn,
+                                          Connection connection,
+                                          SlowQueryLog slowQueryLog) throws SQLException {
+        var query = template(tableInfo, "keyBounds:" + keyColumn + shardKey(metadata), () ->
+                "SELECT MIN(" + keyColumn + ") AS MIN," +
+                        " MAX(" + keyColumn + ") AS MAX" +
+                        " FROM " + fullTableName(tableInfo) +
+                        " WHERE 1 = 1" +
+                        rowFilterCondition(tableInfo) +
+                        shardCondition(tableInfo, metadata) +
+                        " HAVING MIN(" + keyColumn + ") IS NOT NULL");
+        try (var statement = prepare(connection, query, slowQueryLog);
+             var rs = statement.executeQuery()) {
+            return rs.next() ? Optional.of(new TaskBounds(rs.getLong("MIN"), rs.getLong("MAX"), null)) : Optional.empty();
+        }
+    }
+
+    @Override
+    public NamedPreparedStatment queryKeyRange(TableInfo tableInfo,
+                                               JDBCTaskMetadata metadata,
+                                               String keyColumn,
+                                               Connection connection,
+                                               SlowQueryLog slowQueryLog) throws SQLException {
+        boolean hasStart = metadata.getInclusiveStart() != Long.MIN_VALUE;
+        boolean hasEnd = metadata.getExclusiveEnd() != Long.MAX_VALUE;
+        var query = template(tableInfo, "keyRange:" + keyColumn + (hasStart ? ":start" : "") + (hasEnd ? ":end" : "") + shardKey(metadata), () ->
+                "SELECT " + selectList(tableInfo) +
+                        " FROM " + fullTableName(tableInfo) +
+                        " WHERE 1 = 1" +
+                        (hasStart ? " AND " + keyColumn + " >= :rangeStart" : "") +
+                        (hasEnd ? " AND " + keyColumn + " < :rangeEnd" : "") +
+                        rowFilterCondition(tableInfo) +
+                        shardCondition(tableInfo, metadata));
+        var statement = prepare(connection, query, slowQueryLog);
+        statement.setLong("rangeStart", metadata.getInclusiveStart());
+        statement.setLong("rangeEnd", metadata.getExclusiveEnd());
+        return statement;
     }
 
     @Override
@@ -224,6 +486,49 @@ public class DefaultQueryDialect implements QueryDialect {
         return "SELECT CURRENT_TIMESTAMP";
     }
 
+    /**
+     * Returns the parsed query for the key, building it only the first time. The key must identify everything the
+     * query depends on besides the table; the parameter values are bound on every execution.
+     * Reusing the exact same SQL text also lets the server and the driver's statement cache reuse their parse.
+     */
+    protected NamedQuery template(TableInfo tableInfo, String key, Supplier<String> sql) {
+        return templates.computeIfAbsent(fullTableName(tableInfo) + "/" + key, k -> NamedQuery.parse(sql.get()));
+    }
+
+    /**
+     * Statements slower than the log's threshold are logged with their plan, a null log disables timing
+     */
+    private NamedPreparedStatment prepare(Connection connection, NamedQuery query, SlowQueryLog slowQueryLog) throws SQLException {
+        return new NamedPreparedStatment(connection, query).setSlowQueryLog(slowQueryLog);
+    }
+
+    private static String shardKey(JDBCTaskMetadata metadata) {
+        return metadata.isSharded() ? ":" + metadata.getShardIndex() + "/" + metadata.getShardCount() : "";
+    }
+
+    /**
+     * The selected columns of a projected table, quoted since their names are taken as stored in the database.
+     * Quoting uses the database's own quote string, double quotes are a string literal in MySQL compatible databases
+     */
+    protected String selectList(TableInfo tableInfo) {
+        if (!tableInfo.isProjected()) {
+            return "*";
+        }
+        var columns = new StringJoiner(", ");
+        for (var column : tableInfo.getColumns()) {
+            columns.add(quoteIdentifier(tableInfo, column.getName()));
+        }
+        return columns.toString();
+    }
+
+    private static String quoteIdentifier(TableInfo tableInfo, String name) {
+        var quote = tableInfo.getIdentifierQuote();
+        if (quote == null || quote.isBlank()) {
+            return name;
+        }
+        return quote + name.replace(quote, quote + quote) + quote;
+    }
+
     private String coalesce(String columns) {
         return "COALESCE(" + columns + ")";
     }
@@ -232,6 +537,120 @@ public class DefaultQueryDialect implements QueryDialect {
         return tableInfo.getTimeColumns().length > 1 ? coalesce(tableInfo.getTimeColumnsAsString()) : tableInfo.getTimeColumnsAsString();
     }
 
+    /**
+     * Conditions selecting the rows whose coalesced time is the value of the time column at the given index.
+     * Empty for the first column, otherwise ends with AND.
+     */
+    private String earlierTimesAreNull(TableInfo tableInfo, int column) {
+        var conditions = new StringBuilder();
+        for (int i = 0; i < column; i++) {
+            conditions.append(tableInfo.getTimeColumns()[i]).append(" IS NULL AND ");
+        }
+        return conditions.toString();
+    }
+
+    /**
+     * Restricts a data query to the rows matching the table's row filter, in parentheses so it can't change the
+     * meaning of the other conditions.
+     */
+    protected String rowFilterCondition(TableInfo tableInfo) {
+        return tableInfo.hasRowFilter() ? " AND (" + tableInfo.getRowFilter() + ")" : "";
+    }
+
+    /**
+     * Restricts a query to the rows of the shard described by the metadata.
+     * Rows are assigned to shards by the incrementing column, or by a hash of the primary key for tables without one.
+     */
+    protected String shardCondition(TableInfo tableInfo, JDBCTaskMetadata metadata) {
+        if (!metadata.isSharded()) {
+            return "";
+        }
+        String shardKey = tableInfo.hasIncColumn() ? tableInfo.getIncColumn() : keyHash(tableInfo);
+        return " AND " + modulo(shardKey, metadata.getShardCount()) + " = " + metadata.getShardIndex();
+    }
+
+    /**
+     * The chunk of a row, assigned by the primary key so rows keep their chunk when they are updated.
+     * A shard split by the same hash only has the rows whose hash is its index modulo the shard count, so taking that
+     * hash modulo the chunks would leave every chunk empty that isn't congruent to the index modulo their common
+     * factor. Sharded rows are assigned a chunk by the quotient of the hash by the shard count instead, which spreads
+     * every shard's rows over all of its chunks.
+     */
+    private String chunkOf(TableInfo tableInfo, JDBCTaskMetadata metadata, int chunks) {
+        if (metadata.isSharded() && !tableInfo.hasIncColumn()) {
+            int shards = metadata.getShardCount();
+            return "FLOOR(" + modulo(keyHash(tableInfo), shards * chunks) + " / " + shards + ")";
+        }
+        return modulo(keyHash(tableInfo), chunks);
+    }
+
+    /**
+     * Tables are only split by a hash of their primary key when canHashKeys is true, which validate checks for every
+     * property splitting them and getMaxShards for shards
+     */
+    private String keyHash(TableInfo tableInfo) {
+        return hashColumns(tableInfo.getPrimaryKeyColumns())
+                .orElseThrow(() -> new IllegalStateException("Splitting rows by a hash of the primary key is not supported for this database"));
+    }
+
+    private String[] quotedColumns(TableInfo tableInfo) {
+        return Arrays.stream(tableInfo.getColumns()).map(column -> quoteIdentifier(tableInfo, column.getName())).toArray(String[]::new);
+    }
+
+    /**
+     * Aggregates a hash of every read column over the rows of a chunk. The row count is checked separately, so the
+     * aggregate only has to change when a row's values do.
+     * Every column is hashed on its own and weighted by its position, with NULL as 0 and any value as at least 1, so
+     * moving a value or a NULL to another column changes the row's hash. The row hash is reduced below 2^31 so the sum
+     * can't overflow.
+     */
+    protected String checksumAggregate(String[] columns) {
+        var terms = new StringJoiner(" + ");
+        for (int i = 0; i < columns.length; i++) {
+            var hash = columnHash(columns[i])
+                    .orElseThrow(() -> new IllegalStateException("Checksums of chunks are not supported for this database"));
+            terms.add("CASE WHEN " + columns[i] + " IS NULL THEN 0 ELSE " + (i + 1) + " * (1 + " + hash + ") END");
+        }
+        return "SUM(" + modulo(terms.toString(), Integer.MAX_VALUE) + ")";
+    }
+
+    /**
+     * A hash of a single non NULL column value from 0 to 2^32, empty if the database has no hash function.
+     */
+    protected Optional<String> columnHash(String column) {
+        return Optional.empty();
+    }
+
+    /**
+     * Large objects can't be hashed by the database, or only by reading them whole, tables checksummed by chunk must
+     * leave them out of the read columns
+     */
+    @Override
+    public boolean canChecksum(SQLType sqlType) {
+        var jdbcType = getJdbcType(sqlType);
+        return columnHash(hookProbe).isPresent() && jdbcType != JDBCType.BLOB && jdbcType != JDBCType.CLOB && jdbcType != JDBCType.NCLOB && jdbcType != JDBCType.SQLXML;
+    }
+
+    protected String modulo(String expression, int divisor) {
+        return "ABS(MOD(" + expression + ", " + divisor + "))";
+    }
+
+    /**
+     * Dialects that can hash keys implement hashColumns
+     */
+    @Override
+    public boolean canHashKeys() {
+        return hashColumns(new String[]{hookProbe}).isPresent();
+    }
+
+    /**
+     * An integer hash of the columns' values, empty if the database has no hash function. The default dialect serves
+     * databases it doesn't know, so it has none.
+     */
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.empty();
+    }
+
     protected String topLimit(long amount) {
         return "";
     }
@@ -254,6 +673,13 @@ public class DefaultQueryDialect implements QueryDialect {
         return amount >= 0 ? "limit " + amount : "";
     }
 
+    /**
+     * Limits an ordered query, which selects with topLimit(amount), to its first rows.
+     */
+    protected String limitOrdered(String orderedQuery, long amount) {
+        return orderedQuery + " " + endLimit(amount);
+    }
+
     @Override
     public boolean isAutoIncrementColumn(ResultSet columnsResultSet) throws SQLException {
         return "yes".equalsIgnoreCase(columnsResultSet.getString("IS_AUTOINCREMENT"));
@@ -300,7 +726,95 @@ public class DefaultQueryDialect implements QueryDialect {
     }
 
     @Override
-    public ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getValueGetter(int sqlType) {
-        return valueGetters.getOrDefault(sqlType, defaultValueGetter);
+    public boolean streamingRequiresTransaction() {
+        return false;
+    }
+
+    @Override
+    public Map<String, String> streamingConnectionProperties() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, String> statementCacheConnectionProperties() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public List<String> explain(Connection connection, BoundQuery query) throws SQLException {
+        try (var statement = connection.prepareStatement(explainPrefix() + query.getSql())) {
+            query.bind(statement);
+            try (var rs = statement.executeQuery()) {
+                return planLines(rs);
+            }
+        }
+    }
+
+    protected String explainPrefix() {
+        return "EXPLAIN ";
+    }
+
+    /**
+     * Plans of a single column are returned a line per row, wider plans start with a line of column names.
+     */
+    protected static List<String> planLines(ResultSet rs) throws SQLException {
+        var result = new ArrayList<String>();
+        var md = rs.getMetaData();
+        int columns = md.getColumnCount();
+        var line = new StringJoiner(" | ");
+        if (columns > 1) {
+            for (int i = 1; i <= columns; i++) {
+                line.add(md.getColumnLabel(i));
+            }
+            result.add(line.toString());
+        }
+        while (rs.next()) {
+            line = new StringJoiner(" | ");
+            for (int i = 1; i <= columns; i++) {
+                line.add(String.valueOf(rs.getString(i)));
+            }
+            result.add(line.toString());
+        }
+        return result;
+    }
+
+    @Override
+    public ValueGetter getValueGetter(ResultSetMetaData metaData, int column) throws SQLException {
+        int sqlType = metaData.getColumnType(column);
+        var getter = valueGetters.get(sqlType);
+        if (getter != null) {
+            return getter;
+        }
+        if (fitsInLong(metaData, column, sqlType)) {
+            // Same text in CSV and same number in JSON as the generic getters, without the boxing or parsing
+            return getLong;
+        }
+        if (keepType) {
+            switch (sqlType) {
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                    return getDouble;
+                case Types.BOOLEAN:
+                    return getBoolean;
+            }
+        }
+        return defaultValueGetter;
+    }
+
+    private static boolean fitsInLong(ResultSetMetaData metaData, int column, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return true;
+            case Types.BIGINT:
+                return metaData.isSigned(column);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                int precision = metaData.getPrecision(column);
+                return metaData.getScale(column) == 0 && precision > 0 && precision <= 18;
+            default:
+                return false;
+        }
     }
 }
@@ -0,0 +1,37 @@
+package com.upsolver.datasources.jdbc.querybuilders;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+public class MySqlQueryDialect extends DefaultQueryDialect {
+
+    public MySqlQueryDialect(boolean keepType) {
+        super(keepType, Collections.emptyMap());
+    }
+
+    /**
+     * Without a server side cursor the driver reads the whole result set, whatever the fetch size
+     */
+    @Override
+    public Map<String, String> streamingConnectionProperties() {
+        return Collections.singletonMap("useCursorFetch", "true");
+    }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("CRC32(CONCAT_WS('|', " + String.join(", ", columns) + "))");
+    }
+
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("CRC32(" + column + ")");
+    }
+
+    @Override
+    public Map<String, String> statementCacheConnectionProperties() {
+        return Map.of("cachePrepStmts", "true",
+                "prepStmtCacheSize", "64",
+                "prepStmtCacheSqlLimit", "4096");
+    }
+}
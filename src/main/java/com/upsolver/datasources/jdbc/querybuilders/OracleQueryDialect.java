@@ -1,6 +1,7 @@
 package com.upsolver.datasources.jdbc.querybuilders;
 
-import com.upsolver.datasources.jdbc.utils.ThrowingBiFunction;
+import com.upsolver.datasources.jdbc.utils.BoundQuery;
+import com.upsolver.datasources.jdbc.utils.ValueGetter;
 import oracle.jdbc.OracleType;
 
 import java.math.BigInteger;
@@ -15,6 +16,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -25,22 +27,22 @@ public class OracleQueryDialect extends DefaultQueryDialect {
             OracleType.TIMESTAMP_WITH_LOCAL_TIME_ZONE
     ));
 
-    private static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> blobAsString = (rs, i) -> Optional.ofNullable(rs.getBytes(i)).map(bytes -> new BigInteger(1, bytes).toString(16)).orElse(null);
-    private static final Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> getters = new HashMap<>();
+    private static final ValueGetter blobAsString = (rs, i, sink) -> sink.writeString(Optional.ofNullable(rs.getBytes(i)).map(bytes -> new BigInteger(1, bytes).toString(16)).orElse(null));
+    private static final Map<Integer, ValueGetter> getters = new HashMap<>();
     static {
         getters.put(Types.DATE, getDate);
         getters.put(Types.TIME, getTime);
         getters.put(Types.TIMESTAMP, getTimestamp);
         getters.put(OracleType.TIMESTAMP.getVendorTypeNumber(), getTimestamp);
-        getters.put(Types.TIME_WITH_TIMEZONE, getTime);
-        getters.put(Types.TIMESTAMP_WITH_TIMEZONE, getTimestamp);
-        getters.put(OracleType.TIMESTAMP_WITH_TIME_ZONE.getVendorTypeNumber(), getTimestamp);
+        getters.put(Types.TIME_WITH_TIMEZONE, getOffsetTime);
+        getters.put(Types.TIMESTAMP_WITH_TIMEZONE, getOffsetTimestamp);
+        getters.put(OracleType.TIMESTAMP_WITH_TIME_ZONE.getVendorTypeNumber(), getOffsetTimestamp);
         getters.put(OracleType.TIMESTAMP_WITH_LOCAL_TIME_ZONE.getVendorTypeNumber(), getTimestamp);
         getters.put(Types.BLOB, blobAsString);
     }
 
     public OracleQueryDialect(boolean keepType) {
-        super(keepType ? getters : Collections.emptyMap(), keepType ? getObject : getString);
+        super(keepType, keepType ? getters : Collections.emptyMap(), keepType ? getObject : getString);
     }
 
     @Override
@@ -73,6 +75,32 @@ public class OracleQueryDialect extends DefaultQueryDialect {
         return "";
     }
 
+    @Override
+    public Map<String, String> statementCacheConnectionProperties() {
+        return Collections.singletonMap("oracle.jdbc.implicitStatementCacheSize", "32");
+    }
+
+    /**
+     * ROWNUM is assigned before ORDER BY is applied, so the ordered query is limited from outside.
+     */
+    @Override
+    protected String limitOrdered(String orderedQuery, long amount) {
+        return amount >= 0 ? "SELECT * FROM (" + orderedQuery + ")" + rownumCondition(amount, false, true) : orderedQuery;
+    }
+
+    /**
+     * EXPLAIN PLAN takes no bind values, the parameters are left as bind variables named by their position.
+     */
+    @Override
+    public List<String> explain(Connection connection, BoundQuery query) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("EXPLAIN PLAN FOR " + query.replaceParameters((i, value) -> ":" + (i + 1)));
+            try (var rs = statement.executeQuery("SELECT PLAN_TABLE_OUTPUT FROM TABLE(DBMS_XPLAN.DISPLAY())")) {
+                return planLines(rs);
+            }
+        }
+    }
+
     @Override
     public boolean isAutoIncrementColumn(ResultSet columnsResultSet) throws SQLException {
         var def = columnsResultSet.getString("COLUMN_DEF");
@@ -108,4 +136,27 @@ public class OracleQueryDialect extends DefaultQueryDialect {
         }
         return sqlType;
     }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("ORA_HASH(" + String.join(" || '|' || ", columns) + ")");
+    }
+
+    /**
+     * Hashes every column on its own, concatenating a row's columns fails beyond 4000 characters
+     */
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("TO_NUMBER(RAWTOHEX(UTL_RAW.SUBSTR(STANDARD_HASH(" + column + ", 'MD5'), 1, 4)), 'XXXXXXXX')");
+    }
+
+    /**
+     * STANDARD_HASH doesn't take LONG, LONG RAW or BFILE values either
+     */
+    @Override
+    public boolean canChecksum(SQLType sqlType) {
+        var jdbcType = getJdbcType(sqlType);
+        return jdbcType != JDBCType.LONGVARCHAR && jdbcType != JDBCType.LONGVARBINARY && sqlType != OracleType.BFILE &&
+                super.canChecksum(sqlType);
+    }
 }
@@ -1,24 +1,26 @@
 package com.upsolver.datasources.jdbc.querybuilders;
 
-import com.upsolver.datasources.jdbc.utils.ThrowingBiFunction;
+import com.upsolver.datasources.jdbc.utils.ValueGetter;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.TimeZone;
 
 public class PostgreSqlQueryDialect extends DefaultQueryDialect {
 
 
-    protected static final ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getStruct = (rs, i) -> {
+    protected static final ValueGetter getStruct = (rs, i, sink) -> {
         var ts = rs.getString(i);
-        return ts;
+        sink.writeString(ts);
     };
-    protected static final Map<Integer, ThrowingBiFunction<ResultSet, Integer, Object, SQLException>> additionalGetter = new HashMap<>();
+    protected static final Map<Integer, ValueGetter> additionalGetter = new HashMap<>();
 
     static {
         dateTimeGetters.put(Types.STRUCT, getStruct);
@@ -48,4 +50,29 @@ public class PostgreSqlQueryDialect extends DefaultQueryDialect {
     public String getDriverClassName() {
         return "org.postgresql.Driver";
     }
+
+    @Override
+    public ValueGetter getValueGetter(ResultSetMetaData metaData, int column) throws SQLException {
+        var getter = super.getValueGetter(metaData, column);
+        // The driver reports timestamptz as a plain TIMESTAMP but can't read it as a LocalDateTime
+        if (getter == getTimestamp && "timestamptz".equals(metaData.getColumnTypeName(column))) {
+            return getOffsetTimestamp;
+        }
+        return getter;
+    }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("HASHTEXT(CONCAT_WS('|', " + String.join(", ", columns) + "))");
+    }
+
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("(HASHTEXT(" + column + "::text)::bigint + 2147483648)");
+    }
+
+    @Override
+    public boolean streamingRequiresTransaction() {
+        return true;
+    }
 }
@@ -2,16 +2,26 @@ package com.upsolver.datasources.jdbc.querybuilders;
 
 import com.upsolver.datasources.jdbc.JDBCTaskMetadata;
 import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.BoundQuery;
 import com.upsolver.datasources.jdbc.utils.NamedPreparedStatment;
-import com.upsolver.datasources.jdbc.utils.ThrowingBiFunction;
+import com.upsolver.datasources.jdbc.utils.SlowQueryLog;
+import com.upsolver.datasources.jdbc.utils.ValueGetter;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLType;
 import java.time.Instant;
-
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Methods running queries log their statements that are slower than the given SlowQueryLog's threshold together
+ * with their plan, a null log disables logging.
+ */
 public interface QueryDialect {
 
     long utcOffsetSeconds(Connection connection) throws SQLException;
@@ -24,53 +34,148 @@ public interface QueryDialect {
 
     boolean isTimeType(SQLType sqlType) throws SQLException;
     
-    Instant getStartTime(TableInfo tableInfo, Connection connection) throws SQLException;
+    Instant getStartTime(TableInfo tableInfo, Connection connection, SlowQueryLog slowQueryLog) throws SQLException;
 
     SQLType getSqlType(int code) throws SQLException;
 
     SQLType getJdbcType(SQLType sqlType) throws SQLException;
 
-    String fullTableName(TableInfo tableInfo);
+    /**
+     * Whether the dialect can hash the primary key to split rows into shards or chunks. The default dialect serves
+     * databases it doesn't know and has no portable hash function.
+     */
+    boolean canHashKeys();
 
-    NamedPreparedStatment taskInfoByInc(TableInfo tableInfo,
-                                        JDBCTaskMetadata metadata,
-                                        Connection connection) throws SQLException;
+    /**
+     * Whether columns of the type can be included in the checksums of chunks.
+     */
+    boolean canChecksum(SQLType sqlType);
 
-    NamedPreparedStatment taskInfoByTime(TableInfo tableInfo,
-                                         JDBCTaskMetadata metadata,
-                                         Instant maxTime,
-                                         Connection connection) throws SQLException;
+    String fullTableName(TableInfo tableInfo);
 
-    NamedPreparedStatment taskInfoByIncAndTime(TableInfo tableInfo,
-                                               JDBCTaskMetadata metadata,
-                                               Instant maxTime,
-                                               Connection connection) throws SQLException;
+    /**
+     * Returns the bounds of the rows added since the previous task, or empty if there are none.
+     */
+    Optional<TaskBounds> taskInfoByInc(TableInfo tableInfo,
+                                       JDBCTaskMetadata metadata,
+                                       Connection connection,
+                                       SlowQueryLog slowQueryLog) throws SQLException;
 
+    Optional<TaskBounds> taskInfoByTime(TableInfo tableInfo,
+                                        JDBCTaskMetadata metadata,
+                                        Instant maxTime,
+                                        Connection connection,
+                                        SlowQueryLog slowQueryLog) throws SQLException;
+
+    Optional<TaskBounds> taskInfoByIncAndTime(TableInfo tableInfo,
+                                              JDBCTaskMetadata metadata,
+                                              Instant maxTime,
+                                              Connection connection,
+                                              SlowQueryLog slowQueryLog) throws SQLException;
+
+    /**
+     * @param includeStartTime Whether to read every row at exactly the start time, rather than only those from the
+     *                         inclusive start of the incrementing column
+     */
     NamedPreparedStatment queryByIncAndTime(TableInfo tableInfo,
                                             JDBCTaskMetadata metadata,
                                             int limit,
-                                            Connection connection) throws SQLException;
+                                            boolean includeStartTime,
+                                            Connection connection,
+                                            SlowQueryLog slowQueryLog) throws SQLException;
 
+    /**
+     * @param includeStartTime Whether to read rows at exactly the start time, which are otherwise excluded
+     */
     NamedPreparedStatment queryByTime(TableInfo tableInfo,
                                       JDBCTaskMetadata metadata,
                                       int limit,
-                                      Connection connection) throws SQLException;
+                                      boolean includeStartTime,
+                                      Connection connection,
+                                      SlowQueryLog slowQueryLog) throws SQLException;
 
     NamedPreparedStatment queryByInc(TableInfo tableInfo,
                                      JDBCTaskMetadata metadata,
                                      int limit,
-                                     Connection connection) throws SQLException;
+                                     Connection connection,
+                                     SlowQueryLog slowQueryLog) throws SQLException;
 
     NamedPreparedStatment queryFullTable(TableInfo tableInfo,
                                          JDBCTaskMetadata metadata,
                                          int limit,
-                                         Connection connection) throws SQLException;
+                                         Connection connection,
+                                         SlowQueryLog slowQueryLog) throws SQLException;
+
+    /**
+     * Returns the checksum of every one of the chunks the rows are split into by a hash of the primary key, computed
+     * by the database over the rows the full table query reads.
+     */
+    int[] chunkChecksums(TableInfo tableInfo,
+                         JDBCTaskMetadata metadata,
+                         int chunks,
+                         Connection connection,
+                         SlowQueryLog slowQueryLog) throws SQLException;
+
+    /**
+     * Like queryFullTable, but only reads the rows of the given chunks out of the chunks the rows are split into.
+     */
+    NamedPreparedStatment queryChunks(TableInfo tableInfo,
+                                      JDBCTaskMetadata metadata,
+                                      int chunks,
+                                      int[] selectedChunks,
+                                      Connection connection,
+                                      SlowQueryLog slowQueryLog) throws SQLException;
+
+    /**
+     * Returns the smallest and largest value of the key column over the rows the full table query reads, or empty if
+     * there are none.
+     */
+    Optional<TaskBounds> keyBounds(TableInfo tableInfo,
+                                   JDBCTaskMetadata metadata,
+                                   String keyColumn,
+                                   Connection connection,
+                                   SlowQueryLog slowQueryLog) throws SQLException;
+
+    /**
+     * Like queryFullTable, but only reads the rows whose key column is from the metadata's inclusive start up to its
+     * exclusive end. A start of Long.MIN_VALUE or an end of Long.MAX_VALUE leaves that side of the range open.
+     */
+    NamedPreparedStatment queryKeyRange(TableInfo tableInfo,
+                                        JDBCTaskMetadata metadata,
+                                        String keyColumn,
+                                        Connection connection,
+                                        SlowQueryLog slowQueryLog) throws SQLException;
 
     PreparedStatement getCurrentTimestamp(Connection connection) throws SQLException;
 
     Connection getConnection(String url, java.util.Properties info) throws SQLException;
 
+    /**
+     * Whether the driver only fetches results in chunks of the fetch size when auto commit is disabled, otherwise
+     * reading the whole result set into memory.
+     */
+    boolean streamingRequiresTransaction();
+
+    /**
+     * Connection properties the driver needs to honor the fetch size through server side cursors, used when those are
+     * enabled unless configured otherwise.
+     */
+    Map<String, String> streamingConnectionProperties();
+
+    /**
+     * Connection properties enabling the driver's prepared statement cache, used unless configured otherwise.
+     */
+    Map<String, String> statementCacheConnectionProperties();
+
     String getDriverClassName();
 
-    ThrowingBiFunction<ResultSet, Integer, Object, SQLException> getValueGetter(int sqlType);
+    /**
+     * Returns the plan the database chooses for the query using its own explain command, without executing it.
+     */
+    List<String> explain(Connection connection, BoundQuery query) throws SQLException;
+
+    /**
+     * Returns the getter used to read the given column of the query results.
+     */
+    ValueGetter getValueGetter(ResultSetMetaData metaData, int column) throws SQLException;
 }
@@ -3,8 +3,11 @@ package com.upsolver.datasources.jdbc.querybuilders;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.TimeZone;
+import java.util.stream.Collectors;
 
 public class RedshiftQueryDialect extends DefaultQueryDialect {
     public RedshiftQueryDialect(boolean keepType) {
@@ -23,4 +26,19 @@ public class RedshiftQueryDialect extends DefaultQueryDialect {
         // Example default value: "identity"(707455, 0, '1,1'::text)
         return def != null && def.startsWith("\"identity\"(");
     }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("FNV_HASH(" + Arrays.stream(columns).map(c -> "CAST(" + c + " AS VARCHAR)").collect(Collectors.joining(" || '|' || ")) + ")");
+    }
+
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("ABS(MOD(FNV_HASH(CAST(" + column + " AS VARCHAR)), 4294967296))");
+    }
+
+    @Override
+    public boolean streamingRequiresTransaction() {
+        return true;
+    }
 }
@@ -3,6 +3,7 @@ package com.upsolver.datasources.jdbc.querybuilders;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.TimeZone;
 
 public class SnowflakeQueryDialect extends DefaultQueryDialect {
@@ -20,4 +21,24 @@ public class SnowflakeQueryDialect extends DefaultQueryDialect {
     public boolean requiresUppercaseNames() {
         return true;
     }
+
+    @Override
+    protected String explainPrefix() {
+        return "EXPLAIN USING TEXT ";
+    }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("HASH(" + String.join(", ", columns) + ")");
+    }
+
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("ABS(MOD(HASH(" + column + "), 4294967296))");
+    }
+
+    @Override
+    protected String checksumAggregate(String[] columns) {
+        return "HASH_AGG(" + String.join(", ", columns) + ")";
+    }
 }
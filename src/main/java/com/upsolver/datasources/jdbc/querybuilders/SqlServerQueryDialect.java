@@ -1,6 +1,7 @@
 package com.upsolver.datasources.jdbc.querybuilders;
 
 import com.upsolver.datasources.jdbc.metadata.SimpleSqlType;
+import com.upsolver.datasources.jdbc.utils.BoundQuery;
 import microsoft.sql.Types;
 
 import java.lang.reflect.Field;
@@ -8,6 +9,7 @@ import java.sql.Connection;
 import java.sql.JDBCType;
 import java.sql.SQLException;
 import java.sql.SQLType;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -39,6 +41,44 @@ public class SqlServerQueryDialect extends DefaultQueryDialect {
         return "";
     }
 
+    /**
+     * Statement pooling is off by default in the driver
+     */
+    @Override
+    public Map<String, String> statementCacheConnectionProperties() {
+        return Map.of("disableStatementPooling", "false",
+                "statementPoolingCacheSize", "32");
+    }
+
+    /**
+     * SHOWPLAN_XML returns the plan of the statements that follow instead of executing them. The values are inlined
+     * since prepared statements may be created on the server, or taken from the statement pool, regardless of it.
+     */
+    @Override
+    public List<String> explain(Connection connection, BoundQuery query) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("SET SHOWPLAN_XML ON");
+            try (var rs = statement.executeQuery(query.replaceParameters((i, value) -> literal(value)))) {
+                return planLines(rs);
+            } finally {
+                statement.execute("SET SHOWPLAN_XML OFF");
+            }
+        }
+    }
+
+    private static String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof Timestamp) {
+            // DATETIME2 keeps at most 7 fractional digits
+            var text = value.toString();
+            return "CAST('" + text.substring(0, Math.min(text.length(), 27)) + "' AS DATETIME2)";
+        } else {
+            return "N'" + value.toString().replace("'", "''") + "'";
+        }
+    }
 
     @Override
     public SQLType getSqlType(int code) {
@@ -57,4 +97,31 @@ public class SqlServerQueryDialect extends DefaultQueryDialect {
             throw new IllegalStateException(e);
         }
     }
+
+    @Override
+    protected String modulo(String expression, int divisor) {
+        return "ABS((" + expression + ") % " + divisor + ")";
+    }
+
+    @Override
+    protected Optional<String> hashColumns(String[] columns) {
+        return Optional.of("CHECKSUM(" + String.join(", ", columns) + ")");
+    }
+
+    /**
+     * BINARY_CHECKSUM ignores text, ntext, image and xml columns, HASHBYTES hashes the bytes of any other value
+     */
+    @Override
+    protected Optional<String> columnHash(String column) {
+        return Optional.of("CAST(SUBSTRING(HASHBYTES('SHA2_256', CAST(" + column + " AS VARBINARY(MAX))), 1, 4) AS BIGINT)");
+    }
+
+    /**
+     * The legacy text, ntext and image types can't be cast to bytes
+     */
+    @Override
+    public boolean canChecksum(SQLType sqlType) {
+        return sqlType != JDBCType.LONGVARCHAR && sqlType != JDBCType.LONGNVARCHAR && sqlType != JDBCType.LONGVARBINARY &&
+                super.canChecksum(sqlType);
+    }
 }
@@ -0,0 +1,42 @@
+package com.upsolver.datasources.jdbc.querybuilders;
+
+import java.time.Instant;
+
+/**
+ * The incrementing values and last time of the rows that were added since the previous task.
+ * Tables without an incrementing column have zero bounds, tables without time columns have no last time.
+ */
+public class TaskBounds {
+    private final long minInc;
+    private final long maxInc;
+    private final Instant lastTime;
+
+    public TaskBounds(long minInc, long maxInc, Instant lastTime) {
+        this.minInc = minInc;
+        this.maxInc = maxInc;
+        this.lastTime = lastTime;
+    }
+
+    public long getMinInc() {
+        return minInc;
+    }
+
+    public long getMaxInc() {
+        return maxInc;
+    }
+
+    public Instant getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * The bounds covering the rows of both, used to combine the results of probes made per time column.
+     */
+    TaskBounds merge(TaskBounds other) {
+        if (other == null) {
+            return this;
+        }
+        var time = lastTime == null || (other.lastTime != null && other.lastTime.isAfter(lastTime)) ? other.lastTime : lastTime;
+        return new TaskBounds(Math.min(minInc, other.minInc), Math.max(maxInc, other.maxInc), time);
+    }
+}
@@ -0,0 +1,64 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+/**
+ * The SQL of an executed statement together with the values bound to its parameters, in parameter order.
+ */
+public class BoundQuery {
+    private final String sql;
+    private final Object[] parameters;
+
+    public BoundQuery(String sql, Object[] parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Binds the values to a statement with the same parameters, such as the query prefixed with EXPLAIN
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    /**
+     * The SQL with every parameter replaced by the text for its 0 based index and value, for databases that can't
+     * bind values to the statement explaining it. Question marks in quoted literals, identifiers and comments are kept.
+     */
+    public String replaceParameters(BiFunction<Integer, Object, String> replacement) {
+        var result = new StringBuilder(sql.length());
+        int index = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            int end = NamedQuery.skipQuoted(sql, i);
+            if (end > i) {
+                result.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            char c = sql.charAt(i);
+            if (c == '?') {
+                result.append(replacement.apply(index, parameters[index]));
+                index++;
+            } else {
+                result.append(c);
+            }
+            i++;
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return sql + " with parameters " + Arrays.toString(parameters);
+    }
+}
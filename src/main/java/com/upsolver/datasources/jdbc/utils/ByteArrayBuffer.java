@@ -0,0 +1,139 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte array that can be written to like an OutputStream and reused after {@link #reset()}.
+ * Unlike ByteArrayOutputStream it exposes the underlying array to avoid copying it on every read.
+ */
+public class ByteArrayBuffer extends OutputStream {
+    private byte[] array;
+    private int size;
+
+    public ByteArrayBuffer(int initialCapacity) {
+        this.array = new byte[initialCapacity];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        array[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, array, size, length);
+        size += length;
+    }
+
+    public void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required > array.length) {
+            array = Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the number of valid bytes, used after writing directly into {@link #array()}
+     * (after reserving room with {@link #ensureCapacity(int)}) or to drop bytes written after a mark.
+     */
+    public void setSize(int newSize) {
+        size = newSize;
+    }
+
+    public void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            array[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Encodes the value as UTF-8, unpaired surrogates are replaced with '?' like String.getBytes does
+     */
+    public void writeUtf8(String value) {
+        int length = value.length();
+        // Every char takes at most 3 bytes and a surrogate pair takes 4
+        ensureCapacity(length * 3);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                array[size++] = (byte) c;
+            } else if (c < 0x800) {
+                array[size++] = (byte) (0xC0 | (c >> 6));
+                array[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                array[size++] = (byte) (0xF0 | (codePoint >> 18));
+                array[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                array[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                array[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                array[size++] = '?';
+            } else {
+                array[size++] = (byte) (0xE0 | (c >> 12));
+                array[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                array[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    public void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            array[size++] = '-';
+            value = -value;
+        }
+        int digits = digitCount(value);
+        int end = size + digits;
+        for (int i = end - 1; i >= size; i--) {
+            array[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size = end;
+    }
+
+    /**
+     * Writes a non negative value padded with leading zeros to the given width
+     */
+    public void writePadded(long value, int width) {
+        if (value < 0) {
+            writeLong(value);
+            return;
+        }
+        int digits = digitCount(value);
+        ensureCapacity(Math.max(digits, width));
+        for (int i = digits; i < width; i++) {
+            array[size++] = '0';
+        }
+        writeLong(value);
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+}
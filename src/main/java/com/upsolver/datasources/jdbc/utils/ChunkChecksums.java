@@ -0,0 +1,64 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The checksums of the chunks a table's rows are split into by primary key, kept as 4 bytes per chunk so the state
+ * of the previous full load fits in the task metadata. Empty chunks have a checksum of 0.
+ */
+public class ChunkChecksums {
+    private static final int[] noChunks = new int[0];
+
+    /**
+     * Folds the row count and the aggregate hash of a chunk into its checksum, never 0 for a chunk with rows
+     */
+    public static int checksum(long rows, long hash) {
+        if (rows == 0) {
+            return 0;
+        }
+        long mixed = (rows * 0x9E3779B97F4A7C15L) ^ hash;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        int result = (int) (mixed ^ (mixed >>> 32));
+        return result != 0 ? result : 1;
+    }
+
+    public static String encode(int[] checksums) {
+        var buffer = ByteBuffer.allocate(checksums.length * Integer.BYTES);
+        buffer.asIntBuffer().put(checksums);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Null when there is no state
+     */
+    public static int[] decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        var buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).asIntBuffer();
+        var result = new int[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * The chunks whose checksum differs, or null when the previous checksums aren't of the same chunks and every chunk
+     * must be read
+     */
+    public static int[] changed(int[] previous, int[] current) {
+        if (previous == null || previous.length != current.length) {
+            return null;
+        }
+        int count = 0;
+        var result = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            if (previous[i] != current[i]) {
+                result[count++] = i;
+            }
+        }
+        return count == 0 ? noChunks : Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,112 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses another stream as it is read, producing gzip data.
+ * The source is read a block at a time so memory use is bounded by the block size regardless of the stream length.
+ */
+public class CompressingInputStream extends InputStream {
+    private static final byte[] gzipHeader = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final InputStream source;
+    private final Deflater deflater;
+    // Gzip ends with a checksum of the uncompressed data
+    private final CRC32 crc = new CRC32();
+    private final byte[] input;
+    private final ByteArrayBuffer output;
+
+    private int position = 0;
+    private boolean finished = false;
+
+    public CompressingInputStream(InputStream source, int level, int blockSize) {
+        this.source = source;
+        // Raw deflate data, gzip adds its own header and trailer
+        this.deflater = new Deflater(level, true);
+        this.input = new byte[blockSize];
+        this.output = new ByteArrayBuffer(blockSize / 2 + gzipHeader.length);
+        output.write(gzipHeader, 0, gzipHeader.length);
+    }
+
+    private boolean ensureOutput() throws IOException {
+        while (position >= output.size()) {
+            if (finished) {
+                return false;
+            }
+            output.reset();
+            position = 0;
+            compressBlock();
+        }
+        return true;
+    }
+
+    private void compressBlock() throws IOException {
+        int read = source.readNBytes(input, 0, input.length);
+        if (read > 0) {
+            crc.update(input, 0, read);
+            deflater.setInput(input, 0, read);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+        if (read < input.length) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            writeIntLE(crc.getValue());
+            writeIntLE(deflater.getBytesRead());
+            finished = true;
+        }
+    }
+
+    private void deflate() {
+        output.ensureCapacity(8 * 1024);
+        int size = output.size();
+        int written = deflater.deflate(output.array(), size, output.array().length - size);
+        output.setSize(size + written);
+    }
+
+    private void writeIntLE(long value) {
+        for (int i = 0; i < 4; i++) {
+            output.write((int) (value >>> (i * 8)));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (ensureOutput()) {
+            return output.array()[position++] & 0xFF;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (ensureOutput()) {
+            int toRead = Math.min(len, output.size() - position);
+            System.arraycopy(output.array(), position, b, off, toRead);
+            position += toRead;
+            return toRead;
+        }
+        return -1;
+    }
+
+    @Override
+    public int available() {
+        return output.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        source.close();
+    }
+}
@@ -0,0 +1,21 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.io.InputStream;
+
+/**
+ * How the rows written to LoadedData are compressed.
+ * Gzip streams start with a magic header so readers can recognize them without any other marking.
+ */
+public enum Compression {
+    NONE,
+    GZIP;
+
+    public InputStream wrap(InputStream stream, int level, int blockSize) {
+        switch (this) {
+            case GZIP:
+                return new CompressingInputStream(stream, level, blockSize);
+            default:
+                return stream;
+        }
+    }
+}
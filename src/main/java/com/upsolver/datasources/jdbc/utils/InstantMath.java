@@ -1,5 +1,6 @@
 package com.upsolver.datasources.jdbc.utils;
 
+import java.sql.Timestamp;
 import java.time.Instant;
 
 public class InstantMath {
@@ -16,4 +17,47 @@ public class InstantMath {
         }
         return second;
     }
+
+    private static final long minNanos = Long.MIN_VALUE + 1;
+    private static final long maxNanos = Long.MAX_VALUE - 1;
+
+    /**
+     * Nanoseconds since the epoch, which covers the years 1677 to 2262. Instants outside that range saturate at
+     * Long.MIN_VALUE + 1 / Long.MAX_VALUE - 1, Long.MIN_VALUE is left free to mark missing values and
+     * Long.MAX_VALUE to mark limits after the range.
+     */
+    public static long toEpochNanos(Instant time) {
+        return epochNanos(time.getEpochSecond(), time.getNano());
+    }
+
+    /**
+     * An exclusive upper limit for values converted with toEpochNanos. Instants after the range become
+     * Long.MAX_VALUE, so a limit like the initial end time stays above rows that saturated at the end of the range.
+     */
+    public static long toEpochNanosLimit(Instant time) {
+        var nanos = toEpochNanos(time);
+        return nanos == maxNanos && time.isAfter(fromEpochNanos(maxNanos)) ? Long.MAX_VALUE : nanos;
+    }
+
+    public static long toEpochNanos(Timestamp timestamp) {
+        // getTime already contains the milliseconds which getNanos repeats, so only take the seconds from it
+        return epochNanos(Math.floorDiv(timestamp.getTime(), 1000L), timestamp.getNanos());
+    }
+
+    public static Instant fromEpochNanos(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    private static long epochNanos(long seconds, int nanos) {
+        try {
+            // Like Instant.toEpochMilli, negative seconds are multiplied one second closer to the epoch so the
+            // first second of the range doesn't overflow before its nanos are added
+            long result = seconds < 0 ?
+                    Math.addExact(Math.multiplyExact(seconds + 1, 1_000_000_000L), nanos - 1_000_000_000L) :
+                    Math.addExact(Math.multiplyExact(seconds, 1_000_000_000L), nanos);
+            return Math.min(Math.max(result, minNanos), maxNanos);
+        } catch (ArithmeticException e) {
+            return seconds < 0 ? minNanos : maxNanos;
+        }
+    }
 }
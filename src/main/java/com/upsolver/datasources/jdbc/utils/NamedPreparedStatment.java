@@ -5,44 +5,53 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.Instant;
-import java.util.*;
-import java.util.function.Function;
-import java.util.regex.MatchResult;
-import java.util.regex.Pattern;
-
-import static java.sql.ResultSet.TYPE_SCROLL_INSENSITIVE;
 
 
 public class NamedPreparedStatment implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(NamedPreparedStatment.class);
 
-    static final private Pattern namedVariable = Pattern.compile(":(\\w+)");
-
     private final PreparedStatement prepStmt;
-    private final Map<String, List<Integer>> fields = new HashMap<>();
+    private final NamedQuery query;
+    // The bound values in parameter order, kept for the slow query log
+    private final Object[] values;
+    // Null when statements aren't timed
+    private SlowQueryLog slowQueryLog;
 
     public NamedPreparedStatment(Connection conn, String sql) throws SQLException {
-        var finalSql = namedVariable.matcher(sql).replaceAll(new Function<>() {
-            private int index = 1;
-
-            @Override
-            public String apply(MatchResult matchResult) {
-                var name = matchResult.group(1);
-                fields.putIfAbsent(name, new ArrayList<>());
-                var list = fields.get(name);
-                list.add(index);
-                index += 1;
-                return "?";
-            }
-        });
-
-        prepStmt = conn.prepareStatement(finalSql);
+        this(conn, NamedQuery.parse(sql));
+    }
+
+    /**
+     * Prepares an already parsed query, drivers with a statement cache return the statement prepared for the same
+     * SQL earlier on this connection
+     */
+    public NamedPreparedStatment(Connection conn, NamedQuery query) throws SQLException {
+        this.query = query;
+        this.values = new Object[query.getParameterCount()];
+        prepStmt = conn.prepareStatement(query.getSql());
+    }
+
+    /**
+     * Logs the statement with its plan if executing it takes longer than the log's threshold
+     */
+    public NamedPreparedStatment setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
     }
 
 
     public ResultSet executeQuery() throws SQLException {
-        logger.debug("Executing query: " + prepStmt.toString());
-        return prepStmt.executeQuery();
+        logger.debug("Executing query: {}", prepStmt);
+        if (slowQueryLog == null) {
+            return prepStmt.executeQuery();
+        }
+        long start = System.nanoTime();
+        var result = prepStmt.executeQuery();
+        long elapsed = System.nanoTime() - start;
+        if (slowQueryLog.isSlow(elapsed)) {
+            slowQueryLog.slowQuery(new BoundQuery(query.getSql(), values.clone()), elapsed);
+        }
+        return result;
     }
 
     public void close() throws SQLException {
@@ -50,39 +59,42 @@ public class NamedPreparedStatment implements AutoCloseable {
     }
 
     public void setInt(String name, int value) throws SQLException {
-        for (int i : getIndices(name)) {
+        for (int i : query.getIndices(name)) {
             prepStmt.setInt(i, value);
+            values[i - 1] = value;
         }
     }
 
     public void setString(String name, String value) throws SQLException {
-        for (int i : getIndices(name)) {
+        for (int i : query.getIndices(name)) {
             prepStmt.setString(i, value);
+            values[i - 1] = value;
         }
     }
 
     public void setLong(String name, long value) throws SQLException {
-        for (int i : getIndices(name)) {
+        for (int i : query.getIndices(name)) {
             prepStmt.setLong(i, value);
+            values[i - 1] = value;
         }
     }
 
     public void setTime(String name, Instant time) throws SQLException {
         var timestamp = Timestamp.from(time);
-        for (int i : getIndices(name)) {
+        for (int i : query.getIndices(name)) {
             prepStmt.setTimestamp(i, timestamp);
+            values[i - 1] = timestamp;
         }
     }
 
 
-    private List<Integer> getIndices(String name) {
-        return fields.getOrDefault(name, new ArrayList<>());
-    }
-
-    public NamedPreparedStatment setFetchSize(Optional<Integer> fetchSize) throws SQLException {
-        if (fetchSize.isPresent()) {
-            prepStmt.getConnection().setAutoCommit(false);
-            prepStmt.setFetchSize(fetchSize.get());
+    /**
+     * Sets the fetch size when positive. Some drivers only honor it inside a transaction, see
+     * QueryDialect.streamingRequiresTransaction.
+     */
+    public NamedPreparedStatment setFetchSize(int fetchSize) throws SQLException {
+        if (fetchSize > 0) {
+            prepStmt.setFetchSize(fetchSize);
         }
         return this;
     }
@@ -0,0 +1,116 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A query with :name parameters, parsed once into the SQL sent to the driver and the indices of every parameter.
+ * Immutable, so the same query can be prepared on any number of connections.
+ */
+public class NamedQuery {
+    private static final int[] noIndices = new int[0];
+
+    private final String sql;
+    private final Map<String, int[]> indices;
+    private final int parameterCount;
+
+    private NamedQuery(String sql, Map<String, int[]> indices, int parameterCount) {
+        this.sql = sql;
+        this.indices = indices;
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Parameters are only recognized outside quoted literals and identifiers and comments, and the :: cast operator
+     * isn't a parameter, so conditions written by users such as row filters can contain colons.
+     */
+    public static NamedQuery parse(String query) {
+        var positions = new HashMap<String, List<Integer>>();
+        var result = new StringBuilder(query.length());
+        int index = 1;
+        int i = 0;
+        while (i < query.length()) {
+            int end = skipQuoted(query, i);
+            if (end > i) {
+                result.append(query, i, end);
+                i = end;
+            } else if (query.startsWith("::", i)) {
+                result.append("::");
+                i += 2;
+            } else if (query.charAt(i) == ':' && i + 1 < query.length() && isNameChar(query.charAt(i + 1))) {
+                end = i + 1;
+                while (end < query.length() && isNameChar(query.charAt(end))) {
+                    end++;
+                }
+                positions.computeIfAbsent(query.substring(i + 1, end), name -> new ArrayList<>()).add(index++);
+                result.append('?');
+                i = end;
+            } else {
+                result.append(query.charAt(i));
+                i++;
+            }
+        }
+        var indices = new HashMap<String, int[]>();
+        positions.forEach((name, list) -> indices.put(name, list.stream().mapToInt(Integer::intValue).toArray()));
+        return new NamedQuery(result.toString(), indices, index - 1);
+    }
+
+    private static boolean isNameChar(char c) {
+        return c == '_' || (c < 128 && Character.isLetterOrDigit(c));
+    }
+
+    /**
+     * Returns the index after the quoted literal, quoted identifier or comment starting at start, or start if none
+     * starts there. Quotes are escaped by doubling them, an unterminated one runs to the end of the SQL.
+     */
+    static int skipQuoted(String sql, int start) {
+        int end = quotedEnd(sql, start);
+        return end >= 0 ? end : sql.length();
+    }
+
+    /**
+     * Like skipQuoted, but returns -1 for a quote or block comment that isn't terminated, so conditions written by
+     * users can be checked with the same rules the parameters are parsed by
+     */
+    public static int quotedEnd(String sql, int start) {
+        char c = sql.charAt(start);
+        if (c == '\'' || c == '"' || c == '`') {
+            int i = start + 1;
+            while (i < sql.length()) {
+                if (sql.charAt(i) == c) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == c) {
+                        i += 2;
+                        continue;
+                    }
+                    return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        } else if (sql.startsWith("--", start)) {
+            int end = sql.indexOf('\n', start);
+            return end >= 0 ? end + 1 : sql.length();
+        } else if (sql.startsWith("/*", start)) {
+            int end = sql.indexOf("*/", start + 2);
+            return end >= 0 ? end + 2 : -1;
+        }
+        return start;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * The 1 based indices of the parameter in the SQL, empty if the query doesn't use it
+     */
+    int[] getIndices(String name) {
+        return indices.getOrDefault(name, noIndices);
+    }
+}
@@ -0,0 +1,80 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements that take longer than a threshold to execute, together with their execution plan.
+ * Plans are captured in the background on a separate connection, since the slow statement's connection is still
+ * streaming its results, and at most once per planInterval for the same SQL.
+ */
+public class SlowQueryLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+    // Plans rarely change between tasks, a table that keeps being slow shouldn't explain every query
+    private static final Duration planInterval = Duration.ofMinutes(15);
+
+    private final long thresholdNanos;
+    private final Explainer explainer;
+    private final DataSource dataSource;
+    private final Map<String, Instant> lastExplained = new ConcurrentHashMap<>();
+    // Plans that can't be captured right away are dropped rather than queued
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(8), new DaemonThreadFactory("jdbc-explain"), new ThreadPoolExecutor.DiscardPolicy());
+
+    public SlowQueryLog(Duration threshold, Explainer explainer, DataSource dataSource) {
+        this.thresholdNanos = threshold.toNanos();
+        this.explainer = explainer;
+        this.dataSource = dataSource;
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Logs a statement that was found slow and captures its plan unless it was captured recently
+     */
+    public void slowQuery(BoundQuery query, long nanos) {
+        logger.warn("Query took {} ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), query);
+        var now = Instant.now();
+        var last = lastExplained.get(query.getSql());
+        if (last != null && last.plus(planInterval).isAfter(now)) {
+            return;
+        }
+        lastExplained.put(query.getSql(), now);
+        executor.execute(() -> logPlan(query));
+    }
+
+    private void logPlan(BoundQuery query) {
+        try (var connection = dataSource.getConnection()) {
+            var plan = explainer.explain(connection, query);
+            logger.warn("Plan of slow query {}:\n{}", query.getSql(), String.join("\n", plan));
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Failed to capture the plan of slow query {}", query.getSql(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public interface Explainer {
+        /**
+         * Returns the lines of the plan the database chooses for the query, without executing it
+         */
+        List<String> explain(Connection connection, BoundQuery query) throws SQLException;
+    }
+}
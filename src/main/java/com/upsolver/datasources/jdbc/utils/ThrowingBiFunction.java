@@ -1,6 +0,0 @@
-package com.upsolver.datasources.jdbc.utils;
-
-@FunctionalInterface
-public interface ThrowingBiFunction<T, U, R, E extends Throwable> {
-    R apply(T t, U u) throws E;
-}
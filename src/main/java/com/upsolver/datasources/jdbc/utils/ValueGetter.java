@@ -0,0 +1,13 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads a single column of the current row and passes it to a sink using the most specific type available.
+ */
+@FunctionalInterface
+public interface ValueGetter {
+    void get(ResultSet rs, int index, ValueSink sink) throws SQLException, IOException;
+}
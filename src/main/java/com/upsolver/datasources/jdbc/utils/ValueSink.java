@@ -0,0 +1,29 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives the values of a row one column at a time, in column order.
+ * Primitive values are passed without boxing, null values can be passed to any of the reference type methods.
+ */
+public interface ValueSink {
+    void writeNull() throws IOException;
+
+    void writeLong(long value) throws IOException;
+
+    void writeDouble(double value) throws IOException;
+
+    void writeBoolean(boolean value) throws IOException;
+
+    void writeString(String value) throws IOException;
+
+    void writeObject(Object value) throws IOException;
+
+    /**
+     * Writes a non null string that is already encoded as UTF-8.
+     */
+    default void writeUtf8String(byte[] bytes, int offset, int length) throws IOException {
+        writeString(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+}
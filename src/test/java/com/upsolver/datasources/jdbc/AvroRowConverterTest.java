@@ -0,0 +1,182 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AvroRowConverterTest {
+    private static final ColumnInfo[] columns = {
+            new ColumnInfo("id", JDBCType.BIGINT, true, false),
+            new ColumnInfo("amount", JDBCType.DOUBLE, false, false),
+            new ColumnInfo("flag", JDBCType.BOOLEAN, false, false),
+            new ColumnInfo("name", JDBCType.VARCHAR, false, false),
+            new ColumnInfo("price", JDBCType.DECIMAL, false, false),
+            new ColumnInfo("created", JDBCType.TIMESTAMP, false, true),
+            new ColumnInfo("data", JDBCType.VARBINARY, false, false),
+            new ColumnInfo("a-b", JDBCType.INTEGER, false, false),
+            new ColumnInfo("a_b", JDBCType.INTEGER, false, false),
+            new ColumnInfo("2nd", JDBCType.VARCHAR, false, false)
+    };
+
+    private static AvroSchema schema() throws SQLException {
+        var tableInfo = new TableInfo(null, "S", "my table", columns);
+        return new AvroSchema(tableInfo, QueryDialectProvider.forConnection("jdbc:postgresql://localhost/test", true));
+    }
+
+    private static Object[] row(long i) {
+        return new Object[]{
+                i,
+                i / 4.0,
+                i % 2 == 0,
+                i % 5 == 0 ? null : "name " + i + " é😀,\"",
+                new BigDecimal(i).movePointLeft(2),
+                new Timestamp(1_600_000_000_000L + i),
+                i % 3 == 0 ? null : new byte[]{(byte) i, 0, (byte) 0xFF},
+                (int) i,
+                null,
+                "x" + i
+        };
+    }
+
+    private static void writeRows(AvroRowConverter converter, ByteArrayBuffer buffer, long from, long to) throws IOException {
+        for (long i = from; i < to; i++) {
+            converter.convertRow(row(i), buffer);
+        }
+        converter.endBatch(buffer);
+    }
+
+    private static List<GenericRecord> read(ByteArrayBuffer buffer) throws IOException {
+        var records = new ArrayList<GenericRecord>();
+        var input = new ByteArrayInputStream(buffer.array(), 0, buffer.size());
+        try (var stream = new DataFileStream<>(input, new GenericDatumReader<GenericRecord>())) {
+            for (GenericRecord record : stream) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static void assertRow(long i, GenericRecord record) {
+        var expected = row(i);
+        assertEquals(i, record.get("id"));
+        assertEquals(i / 4.0, record.get("amount"));
+        assertEquals(i % 2 == 0, record.get("flag"));
+        assertEquals(expected[3], record.get("name") == null ? null : record.get("name").toString());
+        assertEquals(expected[4].toString(), record.get("price").toString());
+        assertEquals(1_600_000_000_000L + i, record.get("created"));
+        if (expected[6] == null) {
+            assertNull(record.get("data"));
+        } else {
+            var data = (ByteBuffer) record.get("data");
+            var bytes = new byte[data.remaining()];
+            data.get(bytes);
+            assertArrayEquals((byte[]) expected[6], bytes);
+        }
+        assertEquals(i, record.get("a_b"));
+        assertNull(record.get("a_b_1"));
+        assertEquals("x" + i, record.get("_2nd").toString());
+    }
+
+    @Test
+    public void schemaIsValidAvro() throws SQLException {
+        var schema = new Schema.Parser().parse(schema().toJson());
+        assertEquals("my_table", schema.getName());
+        assertEquals(Schema.Type.UNION, schema.getField("id").schema().getType());
+        assertEquals("timestamp-millis", schema.getField("created").schema().getTypes().get(1).getLogicalType().getName());
+        assertEquals(Schema.Type.BYTES, schema.getField("data").schema().getTypes().get(1).getType());
+        assertEquals(Schema.Type.STRING, schema.getField("price").schema().getTypes().get(1).getType());
+    }
+
+    @Test
+    public void readsBackWithTheStandardReader() throws Exception {
+        var converter = new AvroRowConverter(schema());
+        var buffer = new ByteArrayBuffer(16);
+        converter.writeHeader(buffer);
+        // Small blocks and one with a multi byte row count and size, which moves its rows further
+        writeRows(converter, buffer, 0, 1);
+        writeRows(converter, buffer, 1, 10);
+        writeRows(converter, buffer, 10, 1000);
+        // A batch without rows adds no block
+        converter.endBatch(buffer);
+        var records = read(buffer);
+        assertEquals(1000, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRow(i, records.get(i));
+        }
+    }
+
+    @Test
+    public void convertersSharingTheSyncWriteOneFile() throws Exception {
+        // Parallel ranges encode their blocks with their own converters, the stream concatenates them after one header
+        var schema = schema();
+        var sync = AvroRowConverter.newSync();
+        var first = new AvroRowConverter(schema, sync);
+        var second = new AvroRowConverter(schema, sync);
+        var buffer = new ByteArrayBuffer(16);
+        first.writeHeader(buffer);
+        writeRows(first, buffer, 0, 50);
+        var other = new ByteArrayBuffer(16);
+        writeRows(second, other, 50, 120);
+        buffer.write(other.array(), 0, other.size());
+        writeRows(first, buffer, 120, 130);
+        var records = read(buffer);
+        assertEquals(130, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRow(i, records.get(i));
+        }
+    }
+
+    @Test
+    public void convertsValuesToTheFieldType() throws Exception {
+        var converter = new AvroRowConverter(schema());
+        var buffer = new ByteArrayBuffer(16);
+        converter.writeHeader(buffer);
+        converter.startRow(buffer);
+        converter.writeString(" 42 ");
+        converter.writeLong(3);
+        converter.writeString("1");
+        var utf8 = "ü😀".getBytes(StandardCharsets.UTF_8);
+        converter.writeUtf8String(utf8, 0, utf8.length);
+        converter.writeDouble(1.5);
+        converter.writeObject(java.sql.Date.valueOf("2020-01-02"));
+        converter.writeString("text");
+        converter.writeDouble(7.9);
+        converter.writeBoolean(true);
+        converter.writeObject(new byte[]{1, 2, 3});
+        converter.endRow();
+        converter.endBatch(buffer);
+        var record = read(buffer).get(0);
+        assertEquals(42L, record.get("id"));
+        assertEquals(3.0, record.get("amount"));
+        assertEquals(true, record.get("flag"));
+        assertEquals("ü😀", record.get("name").toString());
+        assertEquals("1.5", record.get("price").toString());
+        assertEquals(java.sql.Date.valueOf("2020-01-02").getTime(), record.get("created"));
+        assertEquals(ByteBuffer.wrap("text".getBytes(StandardCharsets.UTF_8)), record.get("data"));
+        assertEquals(7L, record.get("a_b"));
+        assertEquals(1L, record.get("a_b_1"));
+        assertEquals(Base64.getEncoder().encodeToString(new byte[]{1, 2, 3}), record.get("_2nd").toString());
+    }
+}
@@ -0,0 +1,185 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.JDBCType;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CsvRowConverterTest {
+    private static final String[] samples = {
+            "", "plain", "a,b", "say \"hi\"", "\"", "\"\"", "line\nbreak", "cr\rlf\r\n", "trailing,",
+            "café", "€1,5", "😀", "smile 😀, \"quoted\"",
+            "lone \ud83d high", "lone \ude00 low", "\ud83d", "reversed \ude00\ud83d", "\ud83d😀"
+    };
+
+    /**
+     * The straightforward RFC-4180 encoding the converter must produce, values are quoted when they contain
+     * a delimiter, quote or line break and their quotes are doubled
+     */
+    private static String reference(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String referenceRow(Object... values) {
+        return Stream.of(values).map(value -> value == null ? "" : reference(value.toString()))
+                .collect(Collectors.joining(",", "", "\n"));
+    }
+
+    private static byte[] utf8(String value) {
+        // String.getBytes replaces unpaired surrogates with '?' like the converter does
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String rowOf(Object... values) throws IOException {
+        var buffer = new ByteArrayBuffer(4);
+        new CsvRowConverter(null).convertRow(values, buffer);
+        return new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytesOf(ByteArrayBuffer buffer) {
+        var bytes = new byte[buffer.size()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Test
+    public void stringsMatchTheReferenceEncoding() throws IOException {
+        for (String sample : samples) {
+            var buffer = new ByteArrayBuffer(1);
+            var converter = new CsvRowConverter(null);
+            converter.startRow(buffer);
+            converter.writeString(sample);
+            converter.endRow();
+            assertArrayEquals(sample, utf8(reference(sample) + "\n"), bytesOf(buffer));
+        }
+    }
+
+    @Test
+    public void utf8BytesMatchTheReferenceEncoding() throws IOException {
+        for (String sample : samples) {
+            var buffer = new ByteArrayBuffer(1);
+            var converter = new CsvRowConverter(null);
+            var bytes = utf8("xx" + sample + "yy");
+            converter.startRow(buffer);
+            converter.writeUtf8String(bytes, 2, bytes.length - 4);
+            converter.endRow();
+            var expected = utf8(reference(new String(bytes, 2, bytes.length - 4, StandardCharsets.UTF_8)) + "\n");
+            assertArrayEquals(sample, expected, bytesOf(buffer));
+        }
+    }
+
+    @Test
+    public void quotingRewindKeepsEarlierColumns() throws IOException {
+        // The optimistic write of a value that needs quoting is dropped without touching the columns before it
+        var values = new Object[]{"first", "second, with comma", 42L, "é\"😀\"", null, "last\n"};
+        assertEquals(referenceRow(values), rowOf(values));
+    }
+
+    @Test
+    public void randomRowsMatchTheReferenceEncoding() throws IOException {
+        var random = new Random(7);
+        char[] alphabet = {'a', 'Z', '0', ' ', ',', '"', '\n', '\r', 'é', '€', '\ud83d', '\ude00'};
+        for (int row = 0; row < 10_000; row++) {
+            var values = new Object[1 + random.nextInt(5)];
+            for (int i = 0; i < values.length; i++) {
+                var chars = new char[random.nextInt(12)];
+                for (int c = 0; c < chars.length; c++) {
+                    chars[c] = alphabet[random.nextInt(alphabet.length)];
+                }
+                values[i] = random.nextInt(8) == 0 ? null : new String(chars);
+            }
+            var buffer = new ByteArrayBuffer(8);
+            new CsvRowConverter(null).convertRow(values, buffer);
+            assertArrayEquals(utf8(referenceRow(values)), bytesOf(buffer));
+        }
+    }
+
+    @Test
+    public void primitivesMatchTheirStrings() throws IOException {
+        var buffer = new ByteArrayBuffer(1);
+        var converter = new CsvRowConverter(null);
+        converter.startRow(buffer);
+        converter.writeLong(Long.MIN_VALUE);
+        converter.writeLong(0);
+        converter.writeDouble(-1.5e300);
+        converter.writeBoolean(true);
+        converter.writeNull();
+        converter.writeString(null);
+        converter.endRow();
+        assertEquals("-9223372036854775808,0,-1.5E300,true,,\n", new String(bytesOf(buffer), StandardCharsets.UTF_8));
+        assertEquals("1,-2,3,4,false\n", rowOf(1, (short) -2, (byte) 3, 4L, false));
+    }
+
+    @Test
+    public void timestampsMatchTimestampToString() throws IOException {
+        var timestamps = new Timestamp[]{
+                Timestamp.valueOf("2024-03-05 07:08:09"),
+                Timestamp.valueOf("2024-03-05 07:08:09.1"),
+                Timestamp.valueOf("2024-03-05 07:08:09.12"),
+                Timestamp.valueOf("2024-03-05 07:08:09.000000001"),
+                Timestamp.valueOf("2024-03-05 07:08:09.123456789"),
+                Timestamp.valueOf("2024-03-05 07:08:09.100000000"),
+                Timestamp.valueOf("2024-03-05 07:08:09.000100"),
+                Timestamp.valueOf("1999-12-31 23:59:59.999999999"),
+                Timestamp.valueOf("0987-01-02 00:00:00.5"),
+                Timestamp.valueOf("1970-01-01 00:00:00")
+        };
+        for (Timestamp timestamp : timestamps) {
+            assertEquals(timestamp.toString() + "\n", rowOf(timestamp));
+            assertEquals(timestamp.toString() + "\n", rowOf(timestamp.toLocalDateTime()));
+        }
+        var random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            var timestamp = new Timestamp(random.nextLong() % 4_000_000_000_000L);
+            timestamp.setNanos(random.nextInt(4) == 0 ? 0 : random.nextInt(1_000_000_000));
+            assertEquals(timestamp.toString() + "\n", rowOf(timestamp));
+        }
+    }
+
+    @Test
+    public void datesMatchDateToString() throws IOException {
+        var date = java.sql.Date.valueOf("2024-03-05");
+        assertEquals(date.toString() + "\n", rowOf(date));
+        assertEquals("0987-01-02\n", rowOf(LocalDate.of(987, 1, 2)));
+        assertEquals("2024-03-05 00:00:00.0\n", rowOf(LocalDateTime.of(2024, 3, 5, 0, 0)));
+    }
+
+    @Test
+    public void otherObjectsAreQuotedStrings() throws IOException {
+        var value = new Object() {
+            @Override
+            public String toString() {
+                return "x,\"y\"";
+            }
+        };
+        assertEquals("\"x,\"\"y\"\"\"\n", rowOf(value));
+    }
+
+    @Test
+    public void headerQuotesColumnNames() throws IOException {
+        var columns = new ColumnInfo[]{
+                new ColumnInfo("id", JDBCType.BIGINT, true, false),
+                new ColumnInfo("a,b", JDBCType.VARCHAR, false, false),
+                new ColumnInfo("\"c\"", JDBCType.VARCHAR, false, false)
+        };
+        var buffer = new ByteArrayBuffer(1);
+        new CsvRowConverter(new TableInfo(null, "S", "T", columns)).writeHeader(buffer);
+        assertEquals(referenceRow("id", "a,b", "\"c\""), new String(bytesOf(buffer), StandardCharsets.UTF_8));
+    }
+}
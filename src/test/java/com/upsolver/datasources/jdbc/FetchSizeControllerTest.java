@@ -0,0 +1,113 @@
+package com.upsolver.datasources.jdbc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FetchSizeControllerTest {
+    private static final long memoryBudget = 16 * 1024 * 1024;
+
+    /**
+     * Nanos per row that are lowest at the peak fetch size and grow with every doubling or halving away from it
+     */
+    private static IntToLongFunction peakAt(int peak, long base) {
+        return fetchSize -> base + Math.round(50 * Math.abs(Math.log(fetchSize / (double) peak) / Math.log(2)));
+    }
+
+    /**
+     * Feeds the given number of fetches, every row of a fetch taking the nanos for the current fetch size.
+     * Returns the fetch size of every fetch.
+     */
+    private static List<Integer> run(FetchSizeController controller, IntToLongFunction nanosPerRow, int fetches) {
+        var sizes = new ArrayList<Integer>();
+        for (int i = 0; i < fetches; i++) {
+            int fetchSize = controller.getFetchSize();
+            sizes.add(fetchSize);
+            long nanos = nanosPerRow.applyAsLong(fetchSize);
+            for (int row = 0; row < fetchSize; row++) {
+                controller.rowFetched(nanos);
+            }
+        }
+        return sizes;
+    }
+
+    @Test
+    public void doublesTowardsTheFastestSize() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        var sizes = run(controller, peakAt(4000, 100), 12);
+        assertEquals(List.of(1000, 2000, 4000, 8000, 4000, 2000, 4000, 4000, 4000, 4000, 4000, 4000), sizes);
+    }
+
+    @Test
+    public void halvesTowardsTheFastestSize() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        var sizes = run(controller, peakAt(250, 100), 12);
+        // Doubling is worse right away, so the search reverses once before halving down to the peak
+        assertEquals(250, (int) sizes.get(sizes.size() - 1));
+        assertEquals(2000, (int) sizes.get(1));
+        assertEquals(1000, (int) sizes.get(2));
+        assertEquals(sizes.get(sizes.size() - 1), sizes.get(sizes.size() - 2));
+    }
+
+    @Test
+    public void settlesWhenThroughputDoesNotChange() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        var sizes = run(controller, fetchSize -> 100, 10);
+        assertEquals(List.of(1000, 2000, 2000, 2000, 2000, 2000, 2000, 2000, 2000, 2000), sizes);
+    }
+
+    @Test
+    public void searchesAgainAfterDrift() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        run(controller, peakAt(4000, 100), 12);
+        assertEquals(4000, controller.getFetchSize());
+        // The same sizes are now much slower and the fastest size moved up
+        var sizes = run(controller, peakAt(16000, 200), 12);
+        assertEquals(8000, (int) sizes.get(1));
+        assertEquals(16000, (int) sizes.get(sizes.size() - 1));
+        assertEquals(sizes.get(sizes.size() - 1), sizes.get(sizes.size() - 2));
+    }
+
+    @Test
+    public void driftAtTheFastestSizeReturnsToIt() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        run(controller, peakAt(4000, 100), 12);
+        var sizes = run(controller, peakAt(4000, 300), 12);
+        // The drifted measurement at 4000 is the baseline the single step away is compared with
+        assertEquals(List.of(4000, 8000, 4000, 2000, 4000, 4000), sizes.subList(0, 6));
+        assertEquals(4000, (int) sizes.get(sizes.size() - 1));
+    }
+
+    @Test
+    public void smallChangesKeepTheSettledSize() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        run(controller, peakAt(4000, 100), 12);
+        var sizes = run(controller, peakAt(4000, 110), 10);
+        assertTrue(sizes.stream().allMatch(size -> size == 4000));
+    }
+
+    @Test
+    public void neverExceedsTheMemoryBudget() {
+        // 64 KB of 1 KB rows fit 64 rows at a time
+        var controller = new FetchSizeController(1024, 64 * 1024);
+        var sizes = run(controller, peakAt(65536, 100), 10);
+        assertTrue(sizes.stream().allMatch(size -> size <= 64));
+        assertTrue(sizes.stream().allMatch(size -> size >= FetchSizeController.minFetchSize));
+    }
+
+    @Test
+    public void onlyReconsidersAfterAFullFetch() {
+        var controller = new FetchSizeController(100, memoryBudget);
+        for (int row = 1; row < 1000; row++) {
+            assertFalse(controller.rowFetched(100));
+        }
+        assertTrue(controller.rowFetched(100));
+        assertEquals(2000, controller.getFetchSize());
+    }
+}
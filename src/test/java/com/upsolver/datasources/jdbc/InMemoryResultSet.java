@@ -0,0 +1,108 @@
+package com.upsolver.datasources.jdbc;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Forward only result set over rows held in memory, supports the accessors used by the read path and throws on
+ * anything else.
+ */
+class InMemoryResultSet {
+    private final String[] names;
+    private final JDBCType[] types;
+    private final List<Object[]> rows;
+
+    private int row = -1;
+    private boolean wasNull;
+
+    private InMemoryResultSet(String[] names, JDBCType[] types, List<Object[]> rows) {
+        this.names = names;
+        this.types = types;
+        this.rows = rows;
+    }
+
+    static ResultSet create(String[] names, JDBCType[] types, List<Object[]> rows) {
+        var resultSet = new InMemoryResultSet(names, types, rows);
+        var metaData = (ResultSetMetaData) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(),
+                new Class[]{ResultSetMetaData.class}, (proxy, method, args) -> resultSet.metaData(method, args));
+        return (ResultSet) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                (proxy, method, args) -> resultSet.invoke(method, args, metaData));
+    }
+
+    private Object invoke(Method method, Object[] args, ResultSetMetaData metaData) throws SQLException {
+        switch (method.getName()) {
+            case "next":
+                row = Math.min(row + 1, rows.size());
+                return row < rows.size();
+            case "close":
+                return null;
+            case "getStatement":
+                return null;
+            case "wasNull":
+                return wasNull;
+            case "getMetaData":
+                return metaData;
+            case "findColumn":
+                return findColumn((String) args[0]);
+        }
+        var value = value(args[0] instanceof String ? findColumn((String) args[0]) : (Integer) args[0]);
+        switch (method.getName()) {
+            case "getObject":
+                if (args.length == 2 && args[1] == LocalDateTime.class) {
+                    return value != null ? ((Timestamp) value).toLocalDateTime() : null;
+                }
+                return value;
+            case "getString":
+                return value != null ? value.toString() : null;
+            case "getLong":
+                return value != null ? ((Number) value).longValue() : 0L;
+            case "getTimestamp":
+                return value;
+            default:
+                throw new UnsupportedOperationException(method.getName() + " is not supported by the test result set");
+        }
+    }
+
+    private Object metaData(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getColumnCount":
+                return names.length;
+            case "getColumnName":
+            case "getColumnLabel":
+                return names[(Integer) args[0] - 1];
+            case "getColumnType":
+                return types[(Integer) args[0] - 1].getVendorTypeNumber();
+            case "getColumnTypeName":
+                return types[(Integer) args[0] - 1].getName();
+            case "isSigned":
+                return true;
+            case "getPrecision":
+            case "getScale":
+                return 0;
+            default:
+                throw new UnsupportedOperationException(method.getName() + " is not supported by the test result set");
+        }
+    }
+
+    private Object value(int columnIndex) {
+        var value = rows.get(row)[columnIndex - 1];
+        wasNull = value == null;
+        return value;
+    }
+
+    private int findColumn(String columnLabel) throws SQLException {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(columnLabel)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("Unknown column: " + columnLabel);
+    }
+}
@@ -0,0 +1,347 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.ByteArrayBuffer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultSetInputStreamTest {
+    private static final String[] names = {"ID", "NAME"};
+    private static final JDBCType[] types = {JDBCType.BIGINT, JDBCType.VARCHAR};
+    private static final QueryDialect queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/test", false);
+    // Rows of about 1 KB, so every buffer of the stream holds a few dozen of them
+    private static final String padding = "x".repeat(1000);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch connectionClosed = new CountDownLatch(1);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static TableInfo table() {
+        var tableInfo = new TableInfo(null, "S", "T", new ColumnInfo[]{
+                new ColumnInfo("ID", JDBCType.BIGINT, true, false),
+                new ColumnInfo("NAME", JDBCType.VARCHAR, false, false)
+        });
+        tableInfo.setIncColumn("ID");
+        return tableInfo;
+    }
+
+    private static List<Object[]> rows(int count) {
+        var rows = new ArrayList<Object[]>();
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Object[]{(long) i, padding + i});
+        }
+        return rows;
+    }
+
+    private static String csv(int count) {
+        var csv = new StringBuilder("ID,NAME\n");
+        for (Object[] row : rows(count)) {
+            csv.append(row[0]).append(',').append(row[1]).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        connectionClosed.countDown();
+                    }
+                    return null;
+                });
+    }
+
+    private RowReader reader(ResultSet resultSet, int batchSize) {
+        var valuesGetter = new ResultSetValuesGetter(table(), resultSet, queryDialect, batchSize);
+        return new RowReader(table(), valuesGetter, new JDBCTaskMetadata(0, Long.MAX_VALUE), connection(), false);
+    }
+
+    private ResultSetInputStream stream(RowReader reader, boolean prefetch, int encodingThreads,
+                                        Supplier<RowConverter> converters) {
+        var parallelEncoder = encodingThreads > 0 ?
+                new ParallelRowEncoder(reader, converters, executor, encodingThreads) : null;
+        return new ResultSetInputStream(new CsvRowConverter(table()), reader, false, prefetch ? executor : null,
+                prefetch ? 256 * 1024 : 0, parallelEncoder, null);
+    }
+
+    /**
+     * Reads the stream in pieces of random sizes, checking after every read that the delivered watermark only
+     * covers rows whose bytes were fully read and never moves back. Returns everything read.
+     */
+    private static String readCheckingWatermarks(InputStream stream, RowReader reader, int rowCount) throws IOException {
+        var random = new Random(9);
+        var read = new ByteArrayOutputStream();
+        var bytes = new byte[3000];
+        int lines = 0;
+        long lastDelivered = 0;
+        boolean deliveredBeforeEnd = false;
+        int length;
+        while ((length = stream.read(bytes, 0, 1 + random.nextInt(bytes.length))) >= 0) {
+            read.write(bytes, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+            var delivered = reader.getDelivered();
+            if (delivered.readValues()) {
+                // Row ids start at 1 and the first line is the header
+                int rowsRead = lines - 1;
+                assertTrue(delivered.getIncValue() + " delivered after reading " + rowsRead, delivered.getIncValue() <= rowsRead);
+                assertTrue(delivered.getIncValue() >= lastDelivered);
+                lastDelivered = delivered.getIncValue();
+                deliveredBeforeEnd |= rowsRead < rowCount;
+            }
+        }
+        assertTrue(deliveredBeforeEnd);
+        assertEquals(rowCount, reader.getDelivered().getIncValue());
+        return read.toString(StandardCharsets.UTF_8);
+    }
+
+    private void assertDeliversOnlyReadRows(boolean prefetch, int encodingThreads, int batchSize) throws IOException {
+        int rowCount = 3000;
+        var reader = reader(InMemoryResultSet.create(names, types, rows(rowCount)), batchSize);
+        try (var stream = stream(reader, prefetch, encodingThreads, () -> new CsvRowConverter(table()))) {
+            assertEquals(csv(rowCount), readCheckingWatermarks(stream, reader, rowCount));
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void deliversOnlyReadRows() throws IOException {
+        assertDeliversOnlyReadRows(false, 0, 1);
+    }
+
+    @Test(timeout = 30_000)
+    public void deliversOnlyReadRowsWhenPrefetching() throws IOException {
+        assertDeliversOnlyReadRows(true, 0, 1);
+        assertDeliversOnlyReadRows(true, 0, 256);
+    }
+
+    @Test(timeout = 30_000)
+    public void deliversOnlyReadRowsWhenEncodingInParallel() throws IOException {
+        assertDeliversOnlyReadRows(false, 3, 1);
+        assertDeliversOnlyReadRows(true, 3, 256);
+    }
+
+    @Test(timeout = 30_000)
+    public void endOfRowsEndsEveryLaterRead() throws IOException {
+        for (int rowCount : new int[]{0, 1, 64}) {
+            for (boolean prefetch : new boolean[]{false, true}) {
+                var reader = reader(InMemoryResultSet.create(names, types, rows(rowCount)), 1);
+                try (var stream = stream(reader, prefetch, 0, () -> new CsvRowConverter(table()))) {
+                    var read = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+                    assertEquals(rowCount == 0 ? "" : csv(rowCount), read);
+                    assertEquals(-1, stream.read());
+                    assertEquals(-1, stream.read(new byte[10], 0, 10));
+                    assertEquals(0, stream.available());
+                    assertEquals(rowCount > 0, reader.getDelivered().readValues());
+                }
+                // Streams sharing the reader with the next window leave it open
+                assertEquals(1, connectionClosed.getCount());
+            }
+        }
+    }
+
+    /**
+     * Blocks the result set on a row until released, like a fetch waiting on the database
+     */
+    private static final class Gate {
+        private final int row;
+        private final boolean cancelReleases;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger cancels = new AtomicInteger();
+        private volatile boolean cancelled = false;
+
+        Gate(int row, boolean cancelReleases) {
+            this.row = row;
+            this.cancelReleases = cancelReleases;
+        }
+
+        ResultSet wrap(ResultSet rows) {
+            var statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("cancel")) {
+                            cancel();
+                        }
+                        return null;
+                    });
+            var nextCalls = new AtomicInteger();
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("getStatement")) {
+                            return statement;
+                        }
+                        if (method.getName().equals("next") && nextCalls.incrementAndGet() == row) {
+                            block();
+                        }
+                        try {
+                            return method.invoke(rows, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        private void block() throws SQLException, InterruptedException {
+            entered.countDown();
+            released.await();
+            if (cancelled) {
+                throw new SQLException("Query was cancelled");
+            }
+        }
+
+        private void cancel() {
+            cancels.incrementAndGet();
+            if (cancelReleases) {
+                cancelled = true;
+                released.countDown();
+            }
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void closeCancelsAFetchBlockedInTheDatabase() throws Exception {
+        var gate = new Gate(200, true);
+        var reader = reader(gate.wrap(InMemoryResultSet.create(names, types, rows(1000))), 1);
+        var stream = stream(reader, true, 0, () -> new CsvRowConverter(table())).withCloseTimeout(100);
+        assertTrue(stream.read() >= 0);
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+        stream.close();
+        assertEquals(1, gate.cancels.get());
+        // The cancelled query can't be continued, so the reader is closed even though the stream doesn't own it
+        assertEquals(0, connectionClosed.getCount());
+    }
+
+    @Test(timeout = 30_000)
+    public void closeLeavesClosingToAFetchThatIgnoresTheCancel() throws Exception {
+        var gate = new Gate(200, false);
+        var reader = reader(gate.wrap(InMemoryResultSet.create(names, types, rows(1000))), 1);
+        var stream = stream(reader, true, 0, () -> new CsvRowConverter(table())).withCloseTimeout(100);
+        assertTrue(stream.read() >= 0);
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        stream.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, gate.cancels.get());
+        assertEquals(1, connectionClosed.getCount());
+        // Once the fetch returns the background thread stops and closes the reader itself
+        gate.released.countDown();
+        assertTrue(connectionClosed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 30_000)
+    public void closeWaitsForAPrefetchThatStopsInTime() throws Exception {
+        var gate = new Gate(200, false);
+        var reader = reader(gate.wrap(InMemoryResultSet.create(names, types, rows(1000))), 1);
+        var stream = stream(reader, true, 0, () -> new CsvRowConverter(table())).withCloseTimeout(10_000);
+        assertTrue(stream.read() >= 0);
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+        executor.execute(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            gate.released.countDown();
+        });
+        stream.close();
+        assertEquals(0, gate.cancels.get());
+        assertEquals(1, connectionClosed.getCount());
+    }
+
+    /**
+     * Fails on the row with the given id
+     */
+    private static Supplier<RowConverter> failingOn(long id, RuntimeException error) {
+        return () -> new CsvRowConverter(table()) {
+            @Override
+            public void writeLong(long value) {
+                if (value == id) {
+                    throw error;
+                }
+                super.writeLong(value);
+            }
+        };
+    }
+
+    private void assertWorkerErrorReachesTheReader(boolean prefetch, RuntimeException error) throws Exception {
+        var reader = reader(InMemoryResultSet.create(names, types, rows(3000)), 1);
+        var stream = stream(reader, prefetch, 3, failingOn(2000, error));
+        try {
+            stream.readAllBytes();
+            fail("Expected the encoding error");
+        } catch (RuntimeException e) {
+            assertSame(error, e);
+        }
+        stream.close();
+        // Streams that failed close the reader even if they don't own it
+        assertEquals(0, connectionClosed.getCount());
+    }
+
+    @Test(timeout = 30_000)
+    public void workerErrorsReachTheReader() throws Exception {
+        assertWorkerErrorReachesTheReader(false, new IllegalArgumentException("Bad value"));
+    }
+
+    @Test(timeout = 30_000)
+    public void workerErrorsReachTheReaderWhenPrefetching() throws Exception {
+        assertWorkerErrorReachesTheReader(true, new IllegalArgumentException("Bad value"));
+    }
+
+    @Test(timeout = 30_000)
+    public void workerIOErrorsAreIOExceptions() throws Exception {
+        var error = new IOException("Disk full");
+        for (boolean prefetch : new boolean[]{false, true}) {
+            var reader = reader(InMemoryResultSet.create(names, types, rows(3000)), 1);
+            Supplier<RowConverter> converters = () -> new CsvRowConverter(table()) {
+                @Override
+                public void endBatch(ByteArrayBuffer buffer) throws IOException {
+                    throw error;
+                }
+            };
+            var stream = stream(reader, prefetch, 2, converters);
+            try {
+                stream.readAllBytes();
+                fail("Expected the encoding error");
+            } catch (IOException e) {
+                assertSame(error, e);
+            }
+            stream.close();
+        }
+        assertEquals(0, connectionClosed.getCount());
+    }
+}
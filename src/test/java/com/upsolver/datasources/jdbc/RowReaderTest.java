@@ -0,0 +1,211 @@
+package com.upsolver.datasources.jdbc;
+
+import com.upsolver.datasources.jdbc.metadata.ColumnInfo;
+import com.upsolver.datasources.jdbc.metadata.TableInfo;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialect;
+import com.upsolver.datasources.jdbc.querybuilders.QueryDialectProvider;
+import com.upsolver.datasources.jdbc.utils.InstantMath;
+import org.junit.Test;
+
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowReaderTest {
+    private static final String[] names = {"ID", "UPDATED_AT", "NAME"};
+    private static final JDBCType[] types = {JDBCType.BIGINT, JDBCType.TIMESTAMP, JDBCType.VARCHAR};
+    private static final int[] batchSizes = {2, 7, 256, 5000};
+    private static final QueryDialect queryDialect = QueryDialectProvider.forConnection("jdbc:postgresql://localhost/test", false);
+
+    private static TableInfo table(boolean hasIncColumn, boolean hasTimeColumns) {
+        var tableInfo = new TableInfo(null, "S", "T", new ColumnInfo[]{
+                new ColumnInfo("ID", JDBCType.BIGINT, hasIncColumn, false),
+                new ColumnInfo("UPDATED_AT", JDBCType.TIMESTAMP, false, hasTimeColumns),
+                new ColumnInfo("NAME", JDBCType.VARCHAR, false, false)
+        });
+        if (hasIncColumn) {
+            tableInfo.setIncColumn("ID");
+        }
+        if (hasTimeColumns) {
+            tableInfo.setTimeColumns(new String[]{"UPDATED_AT"});
+        }
+        return tableInfo;
+    }
+
+    /**
+     * Rows ordered by time and id like the queries read them, times repeat and ids skip values
+     */
+    private static List<Object[]> rows(int count) {
+        var random = new Random(17);
+        var rows = new ArrayList<Object[]>();
+        long id = 100;
+        long seconds = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < count; i++) {
+            id += 1 + random.nextInt(3);
+            seconds += random.nextInt(3);
+            rows.add(new Object[]{id, time(seconds), random.nextInt(10) == 0 ? null : "row " + i});
+        }
+        return rows;
+    }
+
+    private static Timestamp time(long seconds) {
+        return Timestamp.from(Instant.ofEpochSecond(seconds, 123_456_789));
+    }
+
+    private static Instant timeOf(List<Object[]> rows, int row) {
+        return ((Timestamp) rows.get(row)[1]).toInstant();
+    }
+
+    private static long idOf(List<Object[]> rows, int row) {
+        return (Long) rows.get(row)[0];
+    }
+
+    /**
+     * Reads the windows one after the other with readers sharing a values getter, like consecutive tasks reading
+     * the same result set. Returns the rows and last read values of every window.
+     */
+    private static List<Object> readWindows(TableInfo tableInfo, List<Object[]> rows, int batchSize,
+                                            JDBCTaskMetadata... windows) throws SQLException {
+        var resultSet = InMemoryResultSet.create(names, types, rows);
+        var valuesGetter = new ResultSetValuesGetter(tableInfo, resultSet, queryDialect, batchSize);
+        assertEquals(batchSize > 1, valuesGetter.isBatched());
+        var result = new ArrayList<Object>();
+        for (JDBCTaskMetadata window : windows) {
+            var reader = new RowReader(tableInfo, valuesGetter, window, null, false);
+            var read = new ArrayList<List<Object>>();
+            while (reader.next()) {
+                read.add(Arrays.asList(reader.getValues()));
+            }
+            result.add(read);
+            result.add(reader.readValues());
+            result.add(reader.getLastIncValue());
+            result.add(reader.getLastTimestampValue());
+        }
+        return result;
+    }
+
+    private static void assertBatchesMatchRows(TableInfo tableInfo, List<Object[]> rows, JDBCTaskMetadata... windows)
+            throws SQLException {
+        var expected = readWindows(tableInfo, rows, 1, windows);
+        for (int batchSize : batchSizes) {
+            assertEquals("batch size " + batchSize, expected, readWindows(tableInfo, rows, batchSize, windows));
+        }
+    }
+
+    private static int rowCount(List<Object> windows, int window) {
+        return ((List<?>) windows.get(window * 4)).size();
+    }
+
+    @Test
+    public void batchesMatchRowsWithTimeAndIncColumns() throws SQLException {
+        var rows = rows(2000);
+        var windows = new JDBCTaskMetadata[]{
+                // The incrementing column ends this one before the time does
+                new JDBCTaskMetadata(0, idOf(rows, 300), Instant.EPOCH, timeOf(rows, 500)),
+                // Starts after the rows the previous one left, which are skipped
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, timeOf(rows, 400), timeOf(rows, 700).plusNanos(1)),
+                // Ends on a time shared by several rows
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, timeOf(rows, 700), timeOf(rows, 1100)),
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, timeOf(rows, 1500).minusNanos(1), JDBCTaskMetadata.initalEndTime)
+        };
+        assertBatchesMatchRows(table(true, true), rows, windows);
+
+        var read = readWindows(table(true, true), rows, 1, windows);
+        assertEquals(300, rowCount(read, 0));
+        assertEquals(idOf(rows, 299), read.get(2));
+        assertEquals(timeOf(rows, 299), read.get(3));
+        // The last window reads to the end of the table
+        assertEquals(idOf(rows, 1999), read.get(14));
+        assertEquals(timeOf(rows, 1999), read.get(15));
+    }
+
+    @Test
+    public void batchesMatchRowsWithIncColumn() throws SQLException {
+        var rows = rows(2000);
+        assertBatchesMatchRows(table(true, false), rows,
+                new JDBCTaskMetadata(0, idOf(rows, 10)),
+                new JDBCTaskMetadata(0, idOf(rows, 10)),
+                new JDBCTaskMetadata(0, idOf(rows, 1000) + 1),
+                new JDBCTaskMetadata(0, Long.MAX_VALUE));
+        var read = readWindows(table(true, false), rows, 1, new JDBCTaskMetadata(0, idOf(rows, 10)));
+        assertEquals(10, rowCount(read, 0));
+    }
+
+    @Test
+    public void batchesMatchRowsWithTimeColumns() throws SQLException {
+        var rows = rows(2000);
+        assertBatchesMatchRows(table(false, true), rows,
+                new JDBCTaskMetadata(0, 0, timeOf(rows, 100), timeOf(rows, 100)),
+                new JDBCTaskMetadata(0, 0, timeOf(rows, 100), timeOf(rows, 900)),
+                new JDBCTaskMetadata(0, 0, timeOf(rows, 1200), timeOf(rows, 1300).plusNanos(1)),
+                new JDBCTaskMetadata(0, 0, Instant.EPOCH, JDBCTaskMetadata.initalEndTime));
+    }
+
+    @Test
+    public void windowBeforeEveryRowReadsNothing() throws SQLException {
+        var rows = rows(100);
+        var windows = new JDBCTaskMetadata[]{new JDBCTaskMetadata(0, Long.MAX_VALUE, Instant.EPOCH, timeOf(rows, 0))};
+        assertBatchesMatchRows(table(true, true), rows, windows);
+        var read = readWindows(table(true, true), rows, 1, windows);
+        assertEquals(0, rowCount(read, 0));
+        assertFalse((Boolean) read.get(1));
+    }
+
+    @Test
+    public void rowsPrecedingTheWindowStillAdvanceTheLastValues() throws SQLException {
+        var rows = rows(500);
+        var windows = new JDBCTaskMetadata[]{new JDBCTaskMetadata(0, Long.MAX_VALUE, timeOf(rows, 499).plusNanos(1), timeOf(rows, 499).plusSeconds(1))};
+        assertBatchesMatchRows(table(true, true), rows, windows);
+        var read = readWindows(table(true, true), rows, 1, windows);
+        assertEquals(0, rowCount(read, 0));
+        assertTrue((Boolean) read.get(1));
+        assertEquals(idOf(rows, 499), read.get(2));
+    }
+
+    @Test
+    public void initialEndTimeReadsRowsOutsideTheNanosRange() throws SQLException {
+        var rows = new ArrayList<Object[]>();
+        rows.add(new Object[]{1L, Timestamp.valueOf("1000-01-01 00:00:00"), "before 1677"});
+        rows.add(new Object[]{2L, Timestamp.valueOf("1969-12-31 00:00:00"), "before the epoch"});
+        rows.addAll(rows(50));
+        rows.add(new Object[]{1000L, Timestamp.valueOf("2262-04-11 00:00:00"), "before 2262 ends"});
+        rows.add(new Object[]{1001L, Timestamp.valueOf("9999-12-31 00:00:00"), "after 2262"});
+        rows.add(new Object[]{1002L, Timestamp.valueOf("9999-12-31 23:59:59.999999999"), "after 2262"});
+        var windows = new JDBCTaskMetadata[]{
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, Instant.EPOCH, JDBCTaskMetadata.initalEndTime)
+        };
+        assertEquals(Long.MAX_VALUE, InstantMath.toEpochNanosLimit(JDBCTaskMetadata.initalEndTime));
+        assertBatchesMatchRows(table(true, true), rows, windows);
+        assertBatchesMatchRows(table(false, true), rows, windows);
+
+        var read = readWindows(table(true, true), rows, 1, windows);
+        // Rows before the epoch precede every window, the rows after 2262 are read with their time saturated
+        var values = (List<?>) read.get(0);
+        assertEquals(rows.size() - 2, values.size());
+        assertEquals(1002L, read.get(2));
+        assertEquals(InstantMath.fromEpochNanos(Long.MAX_VALUE - 1), read.get(3));
+    }
+
+    @Test
+    public void windowEndingInRangeStopsBeforeRowsAfter2262() throws SQLException {
+        var rows = new ArrayList<Object[]>(rows(50));
+        rows.add(new Object[]{1001L, Timestamp.valueOf("9999-12-31 00:00:00"), "after 2262"});
+        var windows = new JDBCTaskMetadata[]{
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, Instant.EPOCH, Instant.parse("2100-01-01T00:00:00Z")),
+                new JDBCTaskMetadata(0, Long.MAX_VALUE, Instant.EPOCH, Instant.parse("2262-04-11T23:47:16.854775806Z"))
+        };
+        assertBatchesMatchRows(table(true, true), rows, windows);
+        var read = readWindows(table(true, true), rows, 1, windows);
+        assertEquals(50, rowCount(read, 0));
+        assertEquals(0, rowCount(read, 1));
+    }
+}
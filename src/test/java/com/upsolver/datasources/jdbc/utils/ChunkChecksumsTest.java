@@ -0,0 +1,65 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChunkChecksumsTest {
+
+    @Test
+    public void emptyChunkIsZero() {
+        assertEquals(0, ChunkChecksums.checksum(0, 0));
+        assertEquals(0, ChunkChecksums.checksum(0, 12345));
+    }
+
+    @Test
+    public void chunkWithRowsIsNeverZero() {
+        var random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            long rows = 1 + random.nextInt(Integer.MAX_VALUE);
+            assertNotEquals(0, ChunkChecksums.checksum(rows, random.nextLong()));
+        }
+        assertNotEquals(0, ChunkChecksums.checksum(1, 0));
+        assertNotEquals(0, ChunkChecksums.checksum(Long.MAX_VALUE, Long.MIN_VALUE));
+    }
+
+    @Test
+    public void rowCountAndHashBothChangeTheChecksum() {
+        assertNotEquals(ChunkChecksums.checksum(10, 500), ChunkChecksums.checksum(11, 500));
+        assertNotEquals(ChunkChecksums.checksum(10, 500), ChunkChecksums.checksum(10, 501));
+    }
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        var checksums = new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x12345678};
+        assertArrayEquals(checksums, ChunkChecksums.decode(ChunkChecksums.encode(checksums)));
+        assertArrayEquals(new int[0], ChunkChecksums.decode(ChunkChecksums.encode(new int[0])));
+    }
+
+    @Test
+    public void missingStateDecodesToNull() {
+        assertNull(ChunkChecksums.decode(null));
+    }
+
+    @Test
+    public void differentChunkCountReadsEveryChunk() {
+        assertNull(ChunkChecksums.changed(new int[]{1, 2}, new int[]{1, 2, 3}));
+        assertNull(ChunkChecksums.changed(null, new int[]{1, 2, 3}));
+    }
+
+    @Test
+    public void unchangedChunksAreEmpty() {
+        assertArrayEquals(new int[0], ChunkChecksums.changed(new int[]{1, 0, 3}, new int[]{1, 0, 3}));
+    }
+
+    @Test
+    public void returnsChangedChunksInOrder() {
+        // Chunk 1 gained rows, chunk 3 lost all of them
+        assertArrayEquals(new int[]{1, 3}, ChunkChecksums.changed(new int[]{5, 0, 7, 9}, new int[]{5, 4, 7, 0}));
+    }
+}
@@ -0,0 +1,96 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstantMathTest {
+    private static final Instant firstNanos = Instant.parse("1677-09-21T00:12:43.145224192Z");
+    private static final Instant lastNanos = Instant.parse("2262-04-11T23:47:16.854775807Z");
+
+    @Test
+    public void convertsAroundTheEpoch() {
+        assertEquals(0, InstantMath.toEpochNanos(Instant.EPOCH));
+        assertEquals(-1, InstantMath.toEpochNanos(Instant.parse("1969-12-31T23:59:59.999999999Z")));
+        assertEquals(1_500_000_001, InstantMath.toEpochNanos(Instant.ofEpochSecond(1, 500_000_001)));
+        assertEquals(Instant.parse("1969-12-31T23:59:59.999999999Z"), InstantMath.fromEpochNanos(-1));
+        assertEquals(Instant.ofEpochSecond(-2, 500_000_000), InstantMath.fromEpochNanos(-1_500_000_000));
+    }
+
+    @Test
+    public void timestampsKeepTheirNanos() {
+        var before = Timestamp.from(Instant.parse("1969-12-31T23:59:59.123456789Z"));
+        assertEquals(-876_543_211, InstantMath.toEpochNanos(before));
+        var after = Timestamp.from(Instant.parse("2024-03-05T07:08:09.000000001Z"));
+        assertEquals(InstantMath.toEpochNanos(after.toInstant()), InstantMath.toEpochNanos(after));
+    }
+
+    @Test
+    public void roundTripsWithinTheRange() {
+        var random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long nanos = random.nextLong();
+            if (nanos == Long.MIN_VALUE || nanos == Long.MAX_VALUE) {
+                continue;
+            }
+            var instant = InstantMath.fromEpochNanos(nanos);
+            assertEquals(nanos, InstantMath.toEpochNanos(instant));
+            assertEquals(nanos, InstantMath.toEpochNanos(Timestamp.from(instant)));
+        }
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(InstantMath.fromEpochNanos(Long.MIN_VALUE + 1)));
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(InstantMath.fromEpochNanos(Long.MAX_VALUE - 1)));
+    }
+
+    @Test
+    public void saturatesBefore1677() {
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(firstNanos));
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(firstNanos.minusNanos(1)));
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(Instant.parse("1600-01-01T00:00:00Z")));
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(Instant.MIN));
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanos(Timestamp.valueOf("1000-01-01 00:00:00")));
+        assertEquals(Long.MIN_VALUE + 2, InstantMath.toEpochNanos(firstNanos.plusNanos(2)));
+    }
+
+    @Test
+    public void saturatesAfter2262() {
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(lastNanos));
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(lastNanos.plusNanos(1)));
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(Instant.parse("3000-01-01T00:00:00Z")));
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(Instant.MAX));
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanos(Timestamp.valueOf("9999-12-31 23:59:59.999999999")));
+        assertEquals(Long.MAX_VALUE - 2, InstantMath.toEpochNanos(lastNanos.minusNanos(2)));
+    }
+
+    @Test
+    public void limitsAfterTheRangeExceedEverySaturatedValue() {
+        assertEquals(Long.MAX_VALUE, InstantMath.toEpochNanosLimit(Instant.MAX));
+        assertEquals(Long.MAX_VALUE, InstantMath.toEpochNanosLimit(Instant.parse("3000-01-01T00:00:00Z")));
+        assertEquals(Long.MAX_VALUE, InstantMath.toEpochNanosLimit(lastNanos));
+        // The last instant a value can have exactly is still an exact limit
+        assertEquals(Long.MAX_VALUE - 1, InstantMath.toEpochNanosLimit(lastNanos.minusNanos(1)));
+        assertEquals(0, InstantMath.toEpochNanosLimit(Instant.EPOCH));
+        assertEquals(Long.MIN_VALUE + 1, InstantMath.toEpochNanosLimit(Instant.MIN));
+    }
+
+    @Test
+    public void keepsTheOrderOfInstants() {
+        var random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            var first = Instant.ofEpochSecond(random.nextLong() % 20_000_000_000L, random.nextInt(1_000_000_000));
+            var second = Instant.ofEpochSecond(random.nextLong() % 20_000_000_000L, random.nextInt(1_000_000_000));
+            long firstValue = InstantMath.toEpochNanos(first);
+            long secondValue = InstantMath.toEpochNanos(second);
+            assertTrue(first.compareTo(second) >= 0 || firstValue <= secondValue);
+            assertTrue(first.compareTo(second) <= 0 || firstValue >= secondValue);
+            // Limits are never before 1677, the start of a window is at least the epoch
+            if (first.isBefore(second) && second.isAfter(firstNanos)) {
+                assertTrue(InstantMath.toEpochNanosLimit(second) > firstValue);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.upsolver.datasources.jdbc.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NamedQueryTest {
+
+    @Test
+    public void replacesParametersWithPlaceholders() {
+        var query = NamedQuery.parse("SELECT * FROM t WHERE id >= :start AND id < :end OR id = :start");
+        assertEquals("SELECT * FROM t WHERE id >= ? AND id < ? OR id = ?", query.getSql());
+        assertEquals(3, query.getParameterCount());
+        assertArrayEquals(new int[]{1, 3}, query.getIndices("start"));
+        assertArrayEquals(new int[]{2}, query.getIndices("end"));
+    }
+
+    @Test
+    public void keepsColonsInLiterals() {
+        var sql = "SELECT * FROM t WHERE (updated_at > '2024-01-01 10:30:00' AND note <> 'it''s :x') AND id >= :start";
+        var query = NamedQuery.parse(sql);
+        assertEquals("SELECT * FROM t WHERE (updated_at > '2024-01-01 10:30:00' AND note <> 'it''s :x') AND id >= ?",
+                query.getSql());
+        assertEquals(1, query.getParameterCount());
+        assertArrayEquals(new int[0], query.getIndices("30"));
+    }
+
+    @Test
+    public void keepsColonsInQuotedIdentifiersAndComments() {
+        var sql = "SELECT \"a:b\", `c:d` FROM t -- :x\nWHERE /* :y */ id = :id";
+        var query = NamedQuery.parse(sql);
+        assertEquals("SELECT \"a:b\", `c:d` FROM t -- :x\nWHERE /* :y */ id = ?", query.getSql());
+        assertEquals(1, query.getParameterCount());
+    }
+
+    @Test
+    public void keepsCasts() {
+        var query = NamedQuery.parse("SELECT * FROM t WHERE status::text = 'x' AND id > :start");
+        assertEquals("SELECT * FROM t WHERE status::text = 'x' AND id > ?", query.getSql());
+        assertArrayEquals(new int[]{1}, query.getIndices("start"));
+    }
+
+    @Test
+    public void boundQueryOnlyReplacesParameters() {
+        var query = new BoundQuery("SELECT * FROM t WHERE note = 'why?' AND id = ?", new Object[]{7});
+        assertEquals("SELECT * FROM t WHERE note = 'why?' AND id = 7",
+                query.replaceParameters((index, value) -> String.valueOf(value)));
+    }
+
+    @Test
+    public void skipsQuotedIdentifiersContainingSqlSyntax() {
+        var sql = "\"a;b\" = 1 AND `c--'d` = 2 AND \"e/*\"\"f\" = 'g'";
+        assertEquals(5, NamedQuery.quotedEnd(sql, 0));
+        assertEquals(sql.indexOf(" = 2"), NamedQuery.quotedEnd(sql, sql.indexOf('`')));
+        assertEquals(sql.indexOf(" = 'g'"), NamedQuery.quotedEnd(sql, sql.indexOf("\"e")));
+        assertEquals(sql.length(), NamedQuery.quotedEnd(sql, sql.length() - 3));
+        assertEquals(sql, NamedQuery.parse(sql).getSql());
+    }
+
+    @Test
+    public void reportsUnterminatedQuotes() {
+        assertEquals(-1, NamedQuery.quotedEnd("'it''s", 0));
+        assertEquals(-1, NamedQuery.quotedEnd("\"name", 0));
+        assertEquals(-1, NamedQuery.quotedEnd("/* open", 0));
+        assertEquals(0, NamedQuery.quotedEnd("id = 1", 0));
+    }
+}